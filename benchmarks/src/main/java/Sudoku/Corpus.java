@@ -0,0 +1,120 @@
+package Sudoku;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The puzzles the benchmarks run over.
+ *
+ * HARD is bundled (the hard puzzles the tests use). EASY and MULTI are generated from the
+ * solutions of the hard puzzles with a fixed seed, so every run sees the same puzzles: EASY
+ * removes clues at random for as long as the puzzle stays unique, stopping at EASY_CLUES,
+ * and MULTI keeps removing clues from those until a puzzle has between 2 and MAX_SOLNS
+ * solutions, so that solveAll() finds every one of them.
+ */
+public enum Corpus {
+    EASY, HARD, MULTI;
+
+    static final int EASY_CLUES = 36;
+    static final long SEED = 20110619L;
+
+    private String[] puzzles;
+
+    /** The puzzles, one per 81-character string **/
+    public synchronized String[] puzzles() {
+        if (this.puzzles == null)
+            this.puzzles = this.load();
+        return this.puzzles.clone();
+    }
+
+    private String[] load() {
+        if (this == HARD) {
+            try (InputStream in = Corpus.class.getResourceAsStream("hard.txt")) {
+                return Perf.getPuzzles(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        Random random = new Random(SEED);
+        String[] hard = HARD.puzzles();
+        String[] puzzles = new String[hard.length];
+        for (int k = 0; k < hard.length; ++k) {
+            int[] grid = solution(hard[k]);
+            removeWhileUnique(grid, random);
+            if (this == MULTI)
+                removeUntilMultiple(grid, random);
+            puzzles[k] = toString(grid);
+        }
+        return puzzles;
+    }
+
+    private static int[] solution(String puzzle) {
+        try {
+            SudokuSolver solver = new SudokuSolver(puzzle);
+            if (!solver.solve())
+                throw new IllegalStateException("Unsolvable puzzle in the corpus: " + puzzle);
+            int[] grid = new int[81];
+            for (int c = 0; c < 81; ++c)
+                grid[c] = solver.entries[c / 9][c % 9];
+            return grid;
+        } catch (SudokuBoard.SudokuException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void removeWhileUnique(int[] grid, Random random) {
+        int clues = 81;
+        for (int c: shuffled(random)) {
+            if (clues == EASY_CLUES)
+                return;
+            int n = grid[c];
+            grid[c] = SudokuBoard.EMPTY_ENTRY;
+            if (count(grid, 2) == 1)
+                --clues;
+            else
+                grid[c] = n;
+        }
+    }
+
+    private static void removeUntilMultiple(int[] grid, Random random) {
+        for (int c: shuffled(random)) {
+            int n = grid[c];
+            if (n == SudokuBoard.EMPTY_ENTRY)
+                continue;
+            grid[c] = SudokuBoard.EMPTY_ENTRY;
+            int count = count(grid, SudokuSolver.MAX_SOLNS + 1);
+            if (count > SudokuSolver.MAX_SOLNS)
+                grid[c] = n;
+            else if (count > 1)
+                return;
+        }
+    }
+
+    private static int count(int[] grid, int limit) {
+        try {
+            return new SudokuSolver(toString(grid)).countSolutions(limit);
+        } catch (SudokuBoard.SudokuException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<Integer> shuffled(Random random) {
+        List<Integer> spaces = new ArrayList<Integer>(81);
+        for (int c = 0; c < 81; ++c)
+            spaces.add(c);
+        Collections.shuffle(spaces, random);
+        return spaces;
+    }
+
+    private static String toString(int[] grid) {
+        char[] s = new char[81];
+        for (int c = 0; c < 81; ++c)
+            s[c] = grid[c] == SudokuBoard.EMPTY_ENTRY ? '.' : (char) ('0' + grid[c]);
+        return new String(s);
+    }
+}
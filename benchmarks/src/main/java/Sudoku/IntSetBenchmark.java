@@ -0,0 +1,106 @@
+package Sudoku;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * IntSet operations, each over a table of random sets so that the JIT can't fold them away
+ * and branches don't always go the same way.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class IntSetBenchmark {
+
+    static final int SETS = 1024;
+
+    IntSet[] sets = new IntSet[SETS];
+    IntSet scratch = new IntSet();
+    int[] numbers = new int[SETS];
+    int cursor = 0;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(Corpus.SEED);
+        for (int k = 0; k < SETS; ++k) {
+            this.sets[k] = new IntSet();
+            this.sets[k].setMask(random.nextInt(1 << 9) << 1);
+            this.numbers[k] = 1 + random.nextInt(9);
+        }
+    }
+
+    @Benchmark
+    public int addAndRemove() {
+        IntSet set = this.scratch;
+        int sum = 0;
+        for (int k = 0; k < SETS; ++k) {
+            set.copyFrom(this.sets[k]);
+            set.add(this.numbers[k]);
+            set.remove(this.numbers[SETS - 1 - k]);
+            sum += set.mask();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int contains() {
+        int n = 0;
+        for (int k = 0; k < SETS; ++k) {
+            if (this.sets[k].contains(this.numbers[k]))
+                ++n;
+        }
+        return n;
+    }
+
+    @Benchmark
+    public int size() {
+        int n = 0;
+        for (int k = 0; k < SETS; ++k)
+            n += this.sets[k].size();
+        return n;
+    }
+
+    @Benchmark
+    public int iterate() {
+        int sum = 0;
+        for (int k = 0; k < SETS; ++k) {
+            IntSet set = this.sets[k];
+            for (int n = set.getFirst(); n > 0; n = set.next(n))
+                sum += n;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int intersectAndSubtract() {
+        IntSet set = this.scratch;
+        int sum = 0;
+        for (int k = 0; k < SETS; ++k) {
+            set.copyFrom(this.sets[k]);
+            set.intersect(this.sets[(k + 1) % SETS]);
+            set.union(this.sets[(k + 2) % SETS]);
+            set.subtract(this.sets[(k + 3) % SETS]);
+            sum += set.mask();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int[] toArray() {
+        return this.sets[this.cursor++ & (SETS - 1)].toArray();
+    }
+}
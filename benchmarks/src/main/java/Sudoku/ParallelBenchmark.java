@@ -0,0 +1,60 @@
+package Sudoku;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ParallelSudokuSolver.run() over a batch of BATCH puzzles (the corpus, repeated), at several
+ * thread counts. Each call starts its own thread pool, as run() does. The MULTI corpus is
+ * solved for all solutions, the others for one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ParallelBenchmark {
+
+    static final int BATCH = 200;
+
+    @Param({"EASY", "HARD", "MULTI"})
+    Corpus corpus;
+
+    @Param({"1", "2", "4", "8"})
+    int threads;
+
+    @Param({"STANDARD"})
+    Engine engine;
+
+    List<String> puzzles;
+    boolean findAll;
+
+    @Setup
+    public void setUp() {
+        List<String> corpus = Arrays.asList(this.corpus.puzzles());
+        this.puzzles = new ArrayList<String>(BATCH);
+        for (int k = 0; k < BATCH; ++k)
+            this.puzzles.add(corpus.get(k % corpus.size()));
+        this.findAll = this.corpus == Corpus.MULTI;
+    }
+
+    @Benchmark
+    public SudokuBoard[][] run() {
+        return ParallelSudokuSolver.run(this.puzzles, this.threads, this.findAll, this.engine, ExecutorKind.PLATFORM);
+    }
+}
@@ -0,0 +1,70 @@
+package Sudoku;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SudokuSolver on one puzzle at a time, taking the next puzzle of the corpus in turn, so the
+ * times are averages over the corpus. The solver is reused (as Workspace does), and reloaded
+ * from the parsed puzzle before each call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class SolverBenchmark {
+
+    @Param({"EASY", "HARD", "MULTI"})
+    Corpus corpus;
+
+    SudokuBoard[] boards;
+    SudokuSolver solver;
+    int cursor = 0;
+
+    @Setup
+    public void setUp() throws SudokuBoard.SudokuException {
+        String[] puzzles = this.corpus.puzzles();
+        this.boards = new SudokuBoard[puzzles.length];
+        for (int k = 0; k < puzzles.length; ++k)
+            this.boards[k] = new SudokuBoard(puzzles[k]);
+        this.solver = new SudokuSolver(this.boards[0]);
+    }
+
+    private SudokuSolver next() {
+        int k = this.cursor;
+        this.cursor = k + 1 == this.boards.length ? 0 : k + 1;
+        this.solver.copyFrom(this.boards[k]);
+        return this.solver;
+    }
+
+    @Benchmark
+    public SudokuSolver applyLogic() {
+        SudokuSolver solver = this.next();
+        solver.applyLogic();
+        return solver;
+    }
+
+    @Benchmark
+    public boolean solve() {
+        return this.next().solve();
+    }
+
+    @Benchmark
+    public List<SudokuBoard> solveAll() {
+        return this.next().solveAll();
+    }
+}
@@ -0,0 +1,97 @@
+package Sudoku;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading a board and keeping its options up to date. Each call takes the next puzzle of the
+ * corpus in turn.
+ *
+ * setEntry() fills in every empty space of a puzzle from its solution, starting from a copy
+ * of the puzzle; copyFrom() is that copy alone, to subtract.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SudokuBoardBenchmark {
+
+    @Param({"EASY", "HARD"})
+    Corpus corpus;
+
+    String[] puzzles;
+    SudokuBoard[] boards;
+    int[][][] solutions;
+    SudokuBoard board;
+    int cursor = 0;
+
+    @Setup
+    public void setUp() throws SudokuBoard.SudokuException {
+        this.puzzles = this.corpus.puzzles();
+        this.boards = new SudokuBoard[this.puzzles.length];
+        this.solutions = new int[this.puzzles.length][][];
+        for (int k = 0; k < this.puzzles.length; ++k) {
+            this.boards[k] = new SudokuBoard(this.puzzles[k]);
+            SudokuSolver solver = new SudokuSolver(this.puzzles[k]);
+            solver.solve();
+            this.solutions[k] = solver.entries;
+        }
+        this.board = new SudokuBoard(this.boards[0]);
+    }
+
+    private int next() {
+        int k = this.cursor;
+        this.cursor = k + 1 == this.puzzles.length ? 0 : k + 1;
+        return k;
+    }
+
+    @Benchmark
+    public SudokuBoard parse() throws SudokuBoard.SudokuException {
+        return new SudokuBoard(this.puzzles[this.next()]);
+    }
+
+    @Benchmark
+    public SudokuBoard load() throws SudokuBoard.SudokuException {
+        this.board.load(this.puzzles[this.next()]);
+        return this.board;
+    }
+
+    @Benchmark
+    public SudokuBoard updateOptions() {
+        SudokuBoard board = this.boards[this.next()];
+        board.updateOptions();
+        return board;
+    }
+
+    @Benchmark
+    public SudokuBoard copyFrom() {
+        this.board.copyFrom(this.boards[this.next()]);
+        return this.board;
+    }
+
+    @Benchmark
+    public SudokuBoard setEntry() {
+        int k = this.next();
+        SudokuBoard board = this.board;
+        board.copyFrom(this.boards[k]);
+        int[][] solution = this.solutions[k];
+        for (int i = 0; i < 9; ++i) {
+            for (int j = 0; j < 9; ++j)
+                board.setEntry(i, j, solution[i][j]);
+        }
+        return board;
+    }
+}
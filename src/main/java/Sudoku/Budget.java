@@ -0,0 +1,128 @@
+package Sudoku;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits on how long the search for one puzzle may run: a wall-clock time and a number of
+ * search nodes (boards taken off the frontier). A limit of 0 means no limit.
+ *
+ * Each search starts a Meter and ticks it once per node. The meter throws ExceededException
+ * once either limit is passed, and CancellationException if the meter has been cancelled or
+ * the searching thread has been interrupted (e.g. by Future.cancel(true)).
+ */
+public class Budget {
+
+    public static final Budget UNLIMITED = new Budget(0, 0);
+
+    // The budget used by new solvers (of any engine)
+    public static Budget PER_PUZZLE = UNLIMITED;
+
+    /**
+     * The result reported for a puzzle whose search went over its budget, in place of its
+     * solutions. Compare by identity: it is an empty array, so it is not null ("no solutions").
+     */
+    public static final SudokuBoard[] EXCEEDED = new SudokuBoard[0];
+
+    // The clock and the interrupt flag are only checked every this many nodes
+    private static final int CHECK_INTERVAL = 64;
+
+    private final long maxNanos;
+    private final long maxNodes;
+
+    public Budget(long maxNanos, long maxNodes) {
+        this.maxNanos = maxNanos;
+        this.maxNodes = maxNodes;
+    }
+
+    public Budget withMillis(long maxMillis) {
+        return new Budget(maxMillis * 1000000L, this.maxNodes);
+    }
+
+    public Budget withNodes(long maxNodes) {
+        return new Budget(this.maxNanos, maxNodes);
+    }
+
+    public long getMaxNanos() {
+        return this.maxNanos;
+    }
+
+    public long getMaxNodes() {
+        return this.maxNodes;
+    }
+
+    /** Start metering a search on the current thread. The clock starts now. **/
+    public Meter start() {
+        return new Meter(this);
+    }
+
+    /** Start metering a search that several threads tick at once **/
+    public Meter startShared() {
+        return new SharedMeter(this);
+    }
+
+    /** Thrown out of a search that has gone over its budget **/
+    public static class ExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ExceededException(String message) {
+            super(message);
+        }
+    }
+
+    public static class Meter {
+        protected final long maxNodes;
+        protected final long deadline;
+        private long nodes;
+        private volatile boolean cancelled;
+
+        Meter(Budget budget) {
+            this.maxNodes = budget.maxNodes;
+            this.deadline = budget.maxNanos > 0 ? System.nanoTime() + budget.maxNanos : 0;
+        }
+
+        /** Count one search node, and throw if the search should stop **/
+        public void tick() {
+            this.check(++this.nodes);
+        }
+
+        public long getNodes() {
+            return this.nodes;
+        }
+
+        /** Stop the search on every thread ticking this meter **/
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        protected void check(long nodes) {
+            if (this.maxNodes > 0 && nodes > this.maxNodes)
+                throw new ExceededException("Searched more than " + this.maxNodes + " nodes");
+            if (nodes % CHECK_INTERVAL != 0)
+                return;
+            if (this.deadline != 0 && System.nanoTime() - this.deadline > 0)
+                throw new ExceededException("Ran out of time after " + nodes + " nodes");
+            if (this.cancelled || Thread.currentThread().isInterrupted())
+                throw new CancellationException("Cancelled after " + nodes + " nodes");
+        }
+    }
+
+    /* A meter whose node count is shared between threads */
+    private static class SharedMeter extends Meter {
+        private final AtomicLong nodes = new AtomicLong();
+
+        SharedMeter(Budget budget) {
+            super(budget);
+        }
+
+        @Override
+        public void tick() {
+            this.check(this.nodes.incrementAndGet());
+        }
+
+        @Override
+        public long getNodes() {
+            return this.nodes.get();
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package Sudoku;
+
+import java.util.Arrays;
+
+/**
+ * A puzzle's canonical form under the symmetries of Sudoku, and the transform that takes the
+ * puzzle to it.
+ *
+ * The symmetries are: relabeling the numbers, reordering the rows within each band and the
+ * bands themselves, the same for columns and stacks, and transposing. The canonical form is
+ * the least grid (read row by row, an empty space before any number) that any of them makes
+ * of the puzzle, so two puzzles have the same canonical form exactly when one is a transform
+ * of the other. A solution of one is then carried to a solution of the other by undoing one
+ * transform and applying the other.
+ *
+ * The least grid is found a row at a time. For each way of transposing and ordering the
+ * columns, every row that may come next is tried, with numbers labeled in the order they are
+ * first seen; only the transforms that tie for the least row so far are kept for the next.
+ * Puzzles with many empty rows and columns tie for a long time, so the search gives up on a
+ * puzzle once more than MAX_TIES transforms are still tied (see Search.find()).
+ *
+ * Two forms are equal if their canonical grids are, whatever the transforms that led to them.
+ */
+public final class CanonicalForm {
+
+    // The most transforms kept while searching for the least grid
+    public static int MAX_TIES = 1 << 17;
+
+    private static final int N_ORDERS = 1296;
+
+    private static final int[][] PERMS = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+
+    /*
+     * COLUMN_ORDERS[k][p] is the column that the k-th ordering of columns moves to position p.
+     * The k-th ordering puts the stacks in order PERMS[k / 216], then orders the columns within
+     * the first, second and third of them by PERMS[k / 36 % 6], PERMS[k / 6 % 6] and PERMS[k % 6].
+     */
+    private static final byte[][] COLUMN_ORDERS = new byte[N_ORDERS][9];
+
+    static {
+        int k = 0;
+        for (int[] stacks: PERMS) {
+            for (int[] a: PERMS) {
+                for (int[] b: PERMS) {
+                    for (int[] c: PERMS) {
+                        int[][] within = {a, b, c};
+                        for (int s = 0; s < 3; ++s) {
+                            for (int m = 0; m < 3; ++m)
+                                COLUMN_ORDERS[k][3 * s + m] = (byte) (3 * stacks[s] + within[s][m]);
+                        }
+                        k++;
+                    }
+                }
+            }
+        }
+    }
+
+    /* The canonical grid, 16 spaces to a long, 4 bits each */
+    private final long[] packed;
+    private final long fingerprint;
+
+    /*
+     * The transform: canonical space (k, p) holds toLabel[n], where n is the number in row
+     * rows[k] and column columns[p] of the puzzle (of its transpose, if `transposed`)
+     */
+    private final boolean transposed;
+    private final int[] rows;
+    private final int[] columns;
+    private final int[] toLabel;
+    private final int[] fromLabel;
+
+    private CanonicalForm(int[] grid, boolean transposed, int[] rows, int[] columns, int[] toLabel) {
+        this.packed = new long[6];
+        for (int c = 0; c < 81; ++c)
+            this.packed[c >> 4] |= (long) grid[c] << (4 * (c & 15));
+        long h = 0;
+        for (long x: this.packed)
+            h = (h ^ x) * 0x9E3779B97F4A7C15L;
+        this.fingerprint = h ^ (h >>> 32);
+        this.transposed = transposed;
+        this.rows = rows;
+        this.columns = columns;
+        this.toLabel = toLabel;
+        this.fromLabel = new int[10];
+        for (int n = 1; n <= 9; ++n)
+            this.fromLabel[toLabel[n]] = n;
+    }
+
+    /** The canonical form of a puzzle, or null if it ties with too many transforms to find **/
+    public static CanonicalForm of(SudokuBoard board) {
+        return new Search().find(board);
+    }
+
+    /** Same as above, for a puzzle given as text (any character but 1-9 is empty) **/
+    public static CanonicalForm of(CharSequence s) {
+        return new Search().find(s);
+    }
+
+    /** A 64-bit hash of the canonical grid: the same for every transform of a puzzle **/
+    public long fingerprint() {
+        return this.fingerprint;
+    }
+
+    /** The number in canonical space c, or 0 if it is empty **/
+    public int get(int c) {
+        return (int) (this.packed[c >> 4] >>> (4 * (c & 15))) & 0xF;
+    }
+
+    /* The space of the puzzle that canonical space (k, p) comes from */
+    private int source(int k, int p) {
+        int r = this.rows[k], c = this.columns[p];
+        return this.transposed ? 9 * c + r : 9 * r + c;
+    }
+
+    /** Carry a board (such as a solution of the puzzle) through the transform to canonical form **/
+    byte[] toCanonical(SudokuBoard board) {
+        byte[] grid = new byte[81];
+        for (int k = 0; k < 9; ++k) {
+            for (int p = 0; p < 9; ++p) {
+                int c = this.source(k, p);
+                int n = board.entries[c / 9][c % 9];
+                grid[9 * k + p] = (byte) (n > SudokuBoard.EMPTY_ENTRY ? this.toLabel[n] : 0);
+            }
+        }
+        return grid;
+    }
+
+    /** Carry a board in canonical form back through the transform to the puzzle's form **/
+    SudokuBoard fromCanonical(byte[] grid) {
+        int[][] entries = new int[9][9];
+        for (int k = 0; k < 9; ++k) {
+            for (int p = 0; p < 9; ++p) {
+                int c = this.source(k, p);
+                int n = grid[9 * k + p];
+                entries[c / 9][c % 9] = n == 0 ? SudokuBoard.EMPTY_ENTRY : this.fromLabel[n];
+            }
+        }
+        return new SudokuBoard(entries);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CanonicalForm && Arrays.equals(this.packed, ((CanonicalForm) other).packed);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) this.fingerprint;
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[81];
+        for (int c = 0; c < 81; ++c)
+            chars[c] = this.get(c) == 0 ? '.' : (char) ('0' + this.get(c));
+        return new String(chars);
+    }
+
+    /**
+     * Finds canonical forms, reusing its arrays from one puzzle to the next. Not thread-safe.
+     *
+     * Each transform still tied is kept as three numbers: an int holding whether it transposes
+     * (bit 0), its column order (bits 1-11) and the rows used so far (bits 12-20); a long holding
+     * the row placed at each step (4 bits each); and a long holding the label given to each
+     * number seen so far (4 bits each, 0 for none yet) with the next label in bits 36-39.
+     */
+    static class Search {
+        private final int[][] grids = new int[2][81];
+        private final int[] canonical = new int[81];
+        private final int[] best = new int[9];
+
+        private int[] states = new int[2 * N_ORDERS];
+        private long[] placed = new long[2 * N_ORDERS];
+        private long[] labels = new long[2 * N_ORDERS];
+        private int n;
+
+        private int[] nextStates = new int[2 * N_ORDERS];
+        private long[] nextPlaced = new long[2 * N_ORDERS];
+        private long[] nextLabels = new long[2 * N_ORDERS];
+        private int nNext;
+
+        CanonicalForm find(SudokuBoard board) {
+            for (int c = 0; c < 81; ++c) {
+                int n = board.entries[c / 9][c % 9];
+                this.grids[0][c] = n > SudokuBoard.EMPTY_ENTRY ? n : 0;
+            }
+            return this.find();
+        }
+
+        CanonicalForm find(CharSequence s) {
+            if (s.length() < 81)
+                return null;
+            for (int c = 0; c < 81; ++c) {
+                char ch = s.charAt(c);
+                this.grids[0][c] = '1' <= ch && ch <= '9' ? ch - '0' : 0;
+            }
+            return this.find();
+        }
+
+        /* The canonical form of grids[0] */
+        private CanonicalForm find() {
+            for (int i = 0; i < 9; ++i) {
+                for (int j = 0; j < 9; ++j)
+                    this.grids[1][9 * j + i] = this.grids[0][9 * i + j];
+            }
+            // the first row may be any row, transposed or not, under any column order
+            Arrays.fill(this.best, Integer.MAX_VALUE);
+            this.nNext = 0;
+            for (int t = 0; t < 2; ++t) {
+                for (int r = 0; r < 9; ++r)
+                    this.firstRow(t, r);
+            }
+            if (this.nNext > MAX_TIES)
+                return null;
+            System.arraycopy(this.best, 0, this.canonical, 0, 9);
+            this.swap();
+
+            for (int step = 1; step < 9; ++step) {
+                Arrays.fill(this.best, Integer.MAX_VALUE);
+                this.nNext = 0;
+                for (int x = 0; x < this.n; ++x) {
+                    int state = this.states[x];
+                    int used = state >>> 12;
+                    if (step % 3 != 0) {
+                        // finish the band that the last row started
+                        int band = (int) (this.placed[x] >>> (4 * (step - 1)) & 0xF) / 3;
+                        for (int r = 3 * band; r < 3 * band + 3; ++r) {
+                            if ((used & 1 << r) == 0)
+                                this.extend(state, this.placed[x], this.labels[x], r, step);
+                        }
+                    } else {
+                        // start any band that hasn't been used, with any of its rows
+                        for (int r = 0; r < 9; ++r) {
+                            if ((used >>> (3 * (r / 3)) & 7) == 0)
+                                this.extend(state, this.placed[x], this.labels[x], r, step);
+                        }
+                    }
+                    if (this.nNext > MAX_TIES)
+                        return null;
+                }
+                System.arraycopy(this.best, 0, this.canonical, 9 * step, 9);
+                this.swap();
+            }
+
+            // any of the transforms left will do: they all make the same grid
+            int state = this.states[0];
+            int[] rows = new int[9];
+            for (int k = 0; k < 9; ++k)
+                rows[k] = (int) (this.placed[0] >>> (4 * k) & 0xF);
+            int[] columns = new int[9];
+            byte[] order = COLUMN_ORDERS[(state >>> 1) & 0x7FF];
+            for (int p = 0; p < 9; ++p)
+                columns[p] = order[p];
+            // numbers missing from the puzzle take the labels left over, in order
+            int[] toLabel = new int[10];
+            int next = (int) (this.labels[0] >>> 36 & 0xF);
+            for (int d = 1; d <= 9; ++d) {
+                toLabel[d] = (int) (this.labels[0] >>> (4 * (d - 1)) & 0xF);
+                if (toLabel[d] == 0)
+                    toLabel[d] = next++;
+            }
+            return new CanonicalForm(this.canonical, (state & 1) != 0, rows, columns, toLabel);
+        }
+
+        /*
+         * Try row r of grids[t] first under every column order, keeping the orders that tie for
+         * the least row. The orders are walked as a tree, a stack at a time, so that every order
+         * starting with a stack that already makes the row greater is skipped at once.
+         */
+        private void firstRow(int t, int r) {
+            int[] row = this.grids[t];
+            int base = 9 * r;
+            long none = 1L << 36;
+            for (int s = 0; s < 6; ++s) {
+                int[] stacks = PERMS[s];
+                for (int a = 0; a < 6; ++a) {
+                    long labelsA = this.group(row, base + 3 * stacks[0], PERMS[a], 0, none);
+                    if (labelsA < 0)
+                        continue;
+                    for (int b = 0; b < 6; ++b) {
+                        long labelsB = this.group(row, base + 3 * stacks[1], PERMS[b], 3, labelsA);
+                        if (labelsB < 0)
+                            continue;
+                        for (int c = 0; c < 6; ++c) {
+                            long labelsC = this.group(row, base + 3 * stacks[2], PERMS[c], 6, labelsB);
+                            if (labelsC < 0)
+                                continue;
+                            int k = ((s * 6 + a) * 6 + b) * 6 + c;
+                            this.add(t | k << 1 | 1 << (12 + r), r, labelsC);
+                        }
+                    }
+                }
+            }
+        }
+
+        /*
+         * Label the three spaces row[first + order[m]] as positions `pos` to `pos + 2` of the first
+         * row, and compare them with the least row so far. Returns -1 if they make it greater,
+         * otherwise the labels given so far; if they make it less, they become the least row.
+         */
+        private long group(int[] row, int first, int[] order, int pos, long labels) {
+            int[] best = this.best;
+            int next = (int) (labels >>> 36 & 0xF);
+            boolean less = false;
+            for (int m = 0; m < 3; ++m) {
+                int d = row[first + order[m]];
+                int v = 0;
+                if (d != 0) {
+                    int shift = 4 * (d - 1);
+                    v = (int) (labels >>> shift & 0xF);
+                    if (v == 0) {
+                        v = next++;
+                        labels |= (long) v << shift;
+                    }
+                }
+                if (!less) {
+                    if (v > best[pos + m])
+                        return -1;
+                    if (v < best[pos + m]) {
+                        less = true;
+                        this.nNext = 0;
+                        // whatever follows is now the least so far
+                        Arrays.fill(best, pos + m + 1, 9, Integer.MAX_VALUE);
+                    }
+                }
+                if (less)
+                    best[pos + m] = v;
+            }
+            return labels & ~(0xFL << 36) | (long) next << 36;
+        }
+
+        /* Try placing row r at this step of a transform, keeping it if it ties for the least row */
+        private void extend(int state, long placed, long labels, int r, int step) {
+            int[] grid = this.grids[state & 1];
+            byte[] order = COLUMN_ORDERS[(state >>> 1) & 0x7FF];
+            int[] best = this.best;
+            int next = (int) (labels >>> 36 & 0xF);
+            boolean less = false;
+            for (int p = 0; p < 9; ++p) {
+                int d = grid[9 * r + order[p]];
+                int v = 0;
+                if (d != 0) {
+                    int shift = 4 * (d - 1);
+                    v = (int) (labels >>> shift & 0xF);
+                    if (v == 0) {
+                        v = next++;
+                        labels |= (long) v << shift;
+                    }
+                }
+                if (!less) {
+                    if (v > best[p])
+                        return;
+                    if (v < best[p]) {
+                        // a new least row: drop the transforms that tied for the old one
+                        less = true;
+                        this.nNext = 0;
+                    }
+                }
+                if (less)
+                    best[p] = v;
+            }
+            labels = labels & ~(0xFL << 36) | (long) next << 36;
+            this.add(state | 1 << (12 + r), placed | (long) r << (4 * step), labels);
+        }
+
+        private void add(int state, long placed, long labels) {
+            if (this.nNext == this.nextStates.length) {
+                int size = 2 * this.nNext;
+                this.nextStates = Arrays.copyOf(this.nextStates, size);
+                this.nextPlaced = Arrays.copyOf(this.nextPlaced, size);
+                this.nextLabels = Arrays.copyOf(this.nextLabels, size);
+            }
+            this.nextStates[this.nNext] = state;
+            this.nextPlaced[this.nNext] = placed;
+            this.nextLabels[this.nNext] = labels;
+            this.nNext++;
+        }
+
+        private void swap() {
+            int[] states = this.states;
+            long[] placed = this.placed;
+            long[] labels = this.labels;
+            this.states = this.nextStates;
+            this.placed = this.nextPlaced;
+            this.labels = this.nextLabels;
+            this.n = this.nNext;
+            this.nextStates = states;
+            this.nextPlaced = placed;
+            this.nextLabels = labels;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package Sudoku;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Solves puzzles with Knuth's Algorithm X, using Dancing Links (DLX).
+ *
+ * A puzzle is an exact cover problem with 324 constraints (the columns):
+ *   [0, 81)     space (i, j) holds a number
+ *   [81, 162)   row i contains n
+ *   [162, 243)  column j contains n
+ *   [243, 324)  submatrix k contains n
+ * and 729 candidates (the rows), one for each number n in each space (i, j). Each
+ * candidate satisfies exactly four constraints, and a solution picks candidates so
+ * that every constraint is satisfied exactly once.
+ *
+ * The links are stored in parallel int arrays rather than node objects. The empty
+ * matrix is built once and copied for each puzzle.
+ */
+public class DancingLinksSolver extends SudokuBoard {
+
+    private static final int ROOT = 0;
+    private static final int N_COLUMNS = 324;
+    private static final int N_NODES = 1 + N_COLUMNS + 729 * 4;
+
+    /* The links for the empty matrix. Nodes 1-324 are the column headers. */
+    private static final int[] TEMPLATE_L = new int[N_NODES];
+    private static final int[] TEMPLATE_R = new int[N_NODES];
+    private static final int[] TEMPLATE_U = new int[N_NODES];
+    private static final int[] TEMPLATE_D = new int[N_NODES];
+    private static final int[] TEMPLATE_SIZE = new int[N_NODES];
+
+    /* COLUMN[x] is the header of node x's column. CANDIDATE[x] is 9 * space + (n - 1). */
+    private static final int[] COLUMN = new int[N_NODES];
+    private static final int[] CANDIDATE = new int[N_NODES];
+
+    /* FIRST_NODE[candidate] is the first of the four nodes for that candidate */
+    private static final int[] FIRST_NODE = new int[729];
+
+    static {
+        for (int x = 0; x <= N_COLUMNS; ++x) {
+            TEMPLATE_L[x] = x == 0 ? N_COLUMNS : x - 1;
+            TEMPLATE_R[x] = x == N_COLUMNS ? 0 : x + 1;
+            TEMPLATE_U[x] = x;
+            TEMPLATE_D[x] = x;
+            COLUMN[x] = x;
+        }
+        int x = N_COLUMNS + 1;
+        for (int candidate = 0; candidate < 729; ++candidate) {
+            int c = candidate / 9, n = candidate % 9;
+            int i = c / 9, j = c % 9;
+            int[] columns = {
+                    c,
+                    81 + 9 * i + n,
+                    162 + 9 * j + n,
+                    243 + 9 * toSubmatrixIndex(i, j) + n
+            };
+            FIRST_NODE[candidate] = x;
+            for (int k = 0; k < 4; ++k) {
+                int header = 1 + columns[k];
+                COLUMN[x] = header;
+                CANDIDATE[x] = candidate;
+                TEMPLATE_SIZE[header]++;
+                // append to the bottom of the column
+                TEMPLATE_U[x] = TEMPLATE_U[header];
+                TEMPLATE_D[x] = header;
+                TEMPLATE_D[TEMPLATE_U[header]] = x;
+                TEMPLATE_U[header] = x;
+                // link into a ring with the candidate's other nodes
+                TEMPLATE_L[x] = k == 0 ? x + 3 : x - 1;
+                TEMPLATE_R[x] = k == 3 ? x - 3 : x + 1;
+                x++;
+            }
+        }
+    }
+
+    private final int[] left = TEMPLATE_L.clone();
+    private final int[] right = TEMPLATE_R.clone();
+    private final int[] up = TEMPLATE_U.clone();
+    private final int[] down = TEMPLATE_D.clone();
+    private final int[] size = TEMPLATE_SIZE.clone();
+
+    /* The candidates chosen at each depth of the search */
+    private final int[] chosen = new int[81];
+
+    /* Scratch space for coverEntries() */
+    private final boolean[] covered = new boolean[N_COLUMNS + 1];
+
+    /* False if two of the puzzle's initial numbers conflict */
+    private boolean consistent = true;
+
+    private Budget budget = Budget.PER_PUZZLE;
+    private Budget.Meter meter;
+
+    public DancingLinksSolver(String s) throws SudokuException {
+        super(s);
+        this.coverEntries();
+    }
+
+    public DancingLinksSolver(SudokuBoard board) {
+        super(board);
+        this.coverEntries();
+    }
+
+    /**
+     * Limit each search this solver runs. Searches that go over throw a Budget.ExceededException,
+     * and leave the solver unusable.
+     */
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    /** Replace the puzzle with the one in s, reusing this solver's matrix **/
+    @Override
+    public void load(CharSequence s) throws SudokuException {
+        super.load(s);
+        this.reset();
+    }
+
+    /** Replace the puzzle with the one on another board, reusing this solver's matrix **/
+    public void load(SudokuBoard board) {
+        this.copyFrom(board);
+        this.reset();
+    }
+
+    /* Put the links back to the empty matrix, then cover the new puzzle's numbers */
+    private void reset() {
+        System.arraycopy(TEMPLATE_L, 0, this.left, 0, N_NODES);
+        System.arraycopy(TEMPLATE_R, 0, this.right, 0, N_NODES);
+        System.arraycopy(TEMPLATE_U, 0, this.up, 0, N_NODES);
+        System.arraycopy(TEMPLATE_D, 0, this.down, 0, N_NODES);
+        System.arraycopy(TEMPLATE_SIZE, 0, this.size, 0, N_NODES);
+        this.consistent = true;
+        this.coverEntries();
+    }
+
+    /* Remove the constraints satisfied by the initial numbers from the matrix */
+    private void coverEntries() {
+        boolean[] covered = this.covered;
+        Arrays.fill(covered, false);
+        for (int c = 0; c < 81; ++c) {
+            int n = this.entries[c / 9][c % 9];
+            if (n <= EMPTY_ENTRY)
+                continue;
+            int first = FIRST_NODE[9 * c + n - 1];
+            for (int k = 0; k < 4; ++k) {
+                int header = COLUMN[first + k];
+                if (covered[header]) {
+                    this.consistent = false;
+                    return;
+                }
+                covered[header] = true;
+                this.cover(header);
+            }
+        }
+    }
+
+    /**
+     * Solve the puzzle. This instance will store the solution.
+     * @return true if a solution was found
+     */
+    public boolean solve() {
+        List<SudokuBoard> results = new LinkedList<SudokuBoard>();
+        if (this.countSolutions(1, results) == 0)
+            return false;
+        this.copyFrom(results.get(0));
+        return true;
+    }
+
+    /**
+     * Find all possible solutions, quitting once its found
+     * {@link Sudoku.SudokuSolver#MAX_SOLNS} solutions.
+     *
+     * @return A List containing all solutions found.
+     */
+    public List<SudokuBoard> solveAll() {
+        return this.solveAll(SudokuSolver.MAX_SOLNS);
+    }
+
+    /**
+     * Find all possible solutions, quitting once its found `limit` solutions.
+     *
+     * @return A List containing all solutions found.
+     */
+    public List<SudokuBoard> solveAll(int limit) {
+        List<SudokuBoard> results = new LinkedList<SudokuBoard>();
+        this.countSolutions(limit, results);
+        return results;
+    }
+
+    /**
+     * Count the solutions without keeping any, quitting once `limit` have been found.
+     * @return The number of solutions found, at most `limit`.
+     */
+    public int countSolutions(int limit) {
+        return this.countSolutions(limit, null);
+    }
+
+    /** Return true if the puzzle has exactly one solution. This stops at the second one. **/
+    public boolean isUnique() {
+        return this.countSolutions(2) == 1;
+    }
+
+    /* Find up to `limit` solutions, adding each to `results` if it is not null */
+    protected int countSolutions(int limit, List<SudokuBoard> results) {
+        if (!this.consistent || limit <= 0)
+            return 0;
+        this.meter = this.budget.start();
+        return this.search(0, limit, results);
+    }
+
+    private int search(int depth, int limit, List<SudokuBoard> results) {
+        this.meter.tick();
+        if (this.right[ROOT] == ROOT) {
+            if (results != null)
+                results.add(this.solutionBoard(depth));
+            return 1;
+        }
+
+        // pick the constraint with the fewest candidates left
+        int column = this.right[ROOT];
+        for (int h = this.right[column]; h != ROOT; h = this.right[h]) {
+            if (this.size[h] < this.size[column])
+                column = h;
+        }
+        if (this.size[column] == 0)
+            return 0;
+
+        int found = 0;
+        this.cover(column);
+        for (int r = this.down[column]; r != column && found < limit; r = this.down[r]) {
+            this.chosen[depth] = CANDIDATE[r];
+            for (int x = this.right[r]; x != r; x = this.right[x])
+                this.cover(COLUMN[x]);
+            found += this.search(depth + 1, limit - found, results);
+            for (int x = this.left[r]; x != r; x = this.left[x])
+                this.uncover(COLUMN[x]);
+        }
+        this.uncover(column);
+        return found;
+    }
+
+    private void cover(int column) {
+        this.right[this.left[column]] = this.right[column];
+        this.left[this.right[column]] = this.left[column];
+        for (int r = this.down[column]; r != column; r = this.down[r]) {
+            for (int x = this.right[r]; x != r; x = this.right[x]) {
+                this.down[this.up[x]] = this.down[x];
+                this.up[this.down[x]] = this.up[x];
+                this.size[COLUMN[x]]--;
+            }
+        }
+    }
+
+    private void uncover(int column) {
+        for (int r = this.up[column]; r != column; r = this.up[r]) {
+            for (int x = this.left[r]; x != r; x = this.left[x]) {
+                this.size[COLUMN[x]]++;
+                this.down[this.up[x]] = x;
+                this.up[this.down[x]] = x;
+            }
+        }
+        this.right[this.left[column]] = column;
+        this.left[this.right[column]] = column;
+    }
+
+    /* The board given by the initial numbers plus the first `depth` chosen candidates */
+    private SudokuBoard solutionBoard(int depth) {
+        int[][] grid = new int[9][9];
+        for (int i = 0; i < 9; ++i)
+            System.arraycopy(this.entries[i], 0, grid[i], 0, 9);
+        for (int k = 0; k < depth; ++k) {
+            int c = this.chosen[k] / 9;
+            grid[c / 9][c % 9] = this.chosen[k] % 9 + 1;
+        }
+        return new SudokuBoard(grid);
+    }
+
+    public static SudokuBoard[] solve(DancingLinksSolver solver, boolean findAll) {
+        if (findAll) {
+            List<SudokuBoard> solns = solver.solveAll();
+            if (solns.size() > 0) {
+                return solns.toArray(new SudokuBoard[0]);
+            }
+        } else if (solver.solve()) {
+            return new SudokuBoard[]{solver};
+        }
+        return null;
+    }
+}
@@ -0,0 +1,120 @@
+package Sudoku;
+
+/**
+ * The board implementations a puzzle can be solved with.
+ */
+public enum Engine {
+    /* SudokuSolver: a board of IntSets, copied for every guess */
+    STANDARD {
+        public SudokuBoard[] solve(String puzzle, boolean findAll) throws SudokuBoard.SudokuException {
+            return SudokuSolver.solve(new SudokuSolver(puzzle), findAll);
+        }
+
+        public SudokuBoard[] solve(SudokuBoard puzzle, boolean findAll) {
+            return SudokuSolver.solve(new SudokuSolver(puzzle), findAll);
+        }
+
+        public int countSolutions(String puzzle, int limit) throws SudokuBoard.SudokuException {
+            return new SudokuSolver(puzzle).countSolutions(limit);
+        }
+    },
+
+    /* FlatSudokuSolver: a board of primitive arrays, with a reusable frontier */
+    FLAT {
+        public SudokuBoard[] solve(String puzzle, boolean findAll) throws SudokuBoard.SudokuException {
+            return FlatSudokuSolver.solve(new FlatSudokuSolver(puzzle), findAll);
+        }
+
+        public SudokuBoard[] solve(SudokuBoard puzzle, boolean findAll) {
+            return FlatSudokuSolver.solve(new FlatSudokuSolver(puzzle), findAll);
+        }
+
+        public int countSolutions(String puzzle, int limit) throws SudokuBoard.SudokuException {
+            return new FlatSudokuSolver(puzzle).countSolutions(limit);
+        }
+    },
+
+    /* TrailSudokuSolver: one FlatBoard searched in place, backtracking with an undo trail */
+    TRAIL {
+        public SudokuBoard[] solve(String puzzle, boolean findAll) throws SudokuBoard.SudokuException {
+            return TrailSudokuSolver.solve(new TrailSudokuSolver(puzzle), findAll);
+        }
+
+        public SudokuBoard[] solve(SudokuBoard puzzle, boolean findAll) {
+            return TrailSudokuSolver.solve(new TrailSudokuSolver(puzzle), findAll);
+        }
+
+        public int countSolutions(String puzzle, int limit) throws SudokuBoard.SudokuException {
+            return new TrailSudokuSolver(puzzle).countSolutions(limit);
+        }
+    },
+
+    /* DancingLinksSolver: Algorithm X over the 324-column exact cover matrix */
+    DLX {
+        public SudokuBoard[] solve(String puzzle, boolean findAll) throws SudokuBoard.SudokuException {
+            return DancingLinksSolver.solve(new DancingLinksSolver(puzzle), findAll);
+        }
+
+        public SudokuBoard[] solve(SudokuBoard puzzle, boolean findAll) {
+            return DancingLinksSolver.solve(new DancingLinksSolver(puzzle), findAll);
+        }
+
+        public int countSolutions(String puzzle, int limit) throws SudokuBoard.SudokuException {
+            return new DancingLinksSolver(puzzle).countSolutions(limit);
+        }
+    },
+
+    /* ForkJoinSudokuSolver: splits one puzzle's guess tree across a shared ForkJoinPool */
+    FORKJOIN {
+        public SudokuBoard[] solve(String puzzle, boolean findAll) throws SudokuBoard.SudokuException {
+            return new ForkJoinSudokuSolver().solve(new FlatBoard(puzzle), findAll);
+        }
+
+        public SudokuBoard[] solve(SudokuBoard puzzle, boolean findAll) {
+            return new ForkJoinSudokuSolver().solve(new FlatBoard(puzzle), findAll);
+        }
+
+        public int countSolutions(String puzzle, int limit) throws SudokuBoard.SudokuException {
+            return new ForkJoinSudokuSolver().countSolutions(new FlatBoard(puzzle), limit);
+        }
+    };
+
+    /**
+     * Solve the given puzzle.
+     * @return All solutions found, or null if there are none.
+     */
+    public abstract SudokuBoard[] solve(String puzzle, boolean findAll) throws SudokuBoard.SudokuException;
+
+    /** Same as above, for a puzzle that has already been parsed **/
+    public abstract SudokuBoard[] solve(SudokuBoard puzzle, boolean findAll);
+
+    /**
+     * Count the solutions to the given puzzle without keeping any of them.
+     * @return The number of solutions, or `limit` if there are at least that many.
+     */
+    public abstract int countSolutions(String puzzle, int limit) throws SudokuBoard.SudokuException;
+
+    /** Return true if the given puzzle has exactly one solution **/
+    public boolean isUnique(String puzzle) throws SudokuBoard.SudokuException {
+        return this.countSolutions(puzzle, 2) == 1;
+    }
+
+    /** Look up an engine by its (case-insensitive) name, e.g. "flat". **/
+    public static Engine forName(String name) {
+        for (Engine e: values()) {
+            if (e.name().equalsIgnoreCase(name))
+                return e;
+        }
+        throw new IllegalArgumentException("Unknown engine '" + name + "'");
+    }
+
+    public static String names() {
+        String result = "";
+        for (Engine e: values()) {
+            if (result.length() > 0)
+                result += ", ";
+            result += e.name().toLowerCase();
+        }
+        return result;
+    }
+}
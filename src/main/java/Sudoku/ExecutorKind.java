@@ -0,0 +1,51 @@
+package Sudoku;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The kinds of executor ParallelSudokuSolver can run its tasks on.
+ */
+public enum ExecutorKind {
+    /* A fixed pool of nThreads platform threads */
+    PLATFORM {
+        public ExecutorService create(int nThreads) {
+            return Executors.newFixedThreadPool(nThreads);
+        }
+    },
+
+    /* A new virtual thread for every task. nThreads is ignored: the JVM decides how many
+     * carrier threads run them, so no pool has to be sized by hand. */
+    VIRTUAL {
+        public ExecutorService create(int nThreads) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+    },
+
+    /* A ForkJoinPool with nThreads workers, each stealing tasks from the others when idle */
+    STEALING {
+        public ExecutorService create(int nThreads) {
+            return Executors.newWorkStealingPool(nThreads);
+        }
+    };
+
+    public abstract ExecutorService create(int nThreads);
+
+    public static ExecutorKind forName(String name) {
+        for (ExecutorKind e: values()) {
+            if (e.name().equalsIgnoreCase(name))
+                return e;
+        }
+        throw new IllegalArgumentException("Unknown executor '" + name + "'");
+    }
+
+    public static String names() {
+        String result = "";
+        for (ExecutorKind e: values()) {
+            if (result.length() > 0)
+                result += ", ";
+            result += e.name().toLowerCase();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,173 @@
+package Sudoku;
+
+/*
+ * A board that keeps its entire state in one flat short[], so copying a board
+ * is a single System.arraycopy and a board is only two objects on the heap.
+ *
+ * Sets of numbers are stored as masks with the same bit layout as IntSet:
+ * the n-th bit is one if the set contains n.
+ */
+public class FlatBoard implements GuessStrategy.Grid {
+
+    /* Layout of `state`:
+     *   [OPTIONS, OPTIONS + 81)  the numbers that might fill each space (0 once the space is filled)
+     *   [UNITS, UNITS + 27)      the numbers not yet placed in each unit (see SudokuBoard.UNITS)
+     *   [VALUES, VALUES + 81)    the number in each space, or EMPTY_ENTRY
+     *   FILLED                   the number of spaces filled
+     */
+    protected static final int OPTIONS = 0;
+    protected static final int UNITS = 81;
+    protected static final int VALUES = 108;
+    protected static final int FILLED = 189;
+    protected static final int STATE_SIZE = 190;
+
+    /* The mask containing all of the numbers 1-9 */
+    public static final int ALL = 0x3FE;
+
+    protected final short[] state = new short[STATE_SIZE];
+
+    public FlatBoard() {
+        this.updateOptions();
+    }
+
+    public FlatBoard(String s) throws SudokuBoard.SudokuException {
+        this.parse(s);
+    }
+
+    public FlatBoard(SudokuBoard board) {
+        this.copyEntries(board);
+    }
+
+    public FlatBoard(FlatBoard other) {
+        this.copyFrom(other);
+    }
+
+    /** Replace this board with the puzzle in s **/
+    public void load(CharSequence s) throws SudokuBoard.SudokuException {
+        this.parse(s);
+    }
+
+    /** Replace this board with the puzzle on another kind of board **/
+    public void load(SudokuBoard board) {
+        this.copyEntries(board);
+    }
+
+    private void parse(CharSequence s) throws SudokuBoard.SudokuException {
+        if (s.length() < 81)
+            throw new SudokuBoard.SudokuException("Not enough characters in string to construct a board.");
+        this.state[FILLED] = 0;
+        for (int c = 0; c < 81; ++c) {
+            int n = s.charAt(c);
+            if ('1' <= n && n <= '9') {
+                this.state[VALUES + c] = (short) (n - '0');
+                this.state[FILLED]++;
+            } else {
+                this.state[VALUES + c] = (short) SudokuBoard.EMPTY_ENTRY;
+            }
+        }
+        this.updateOptions();
+    }
+
+    private void copyEntries(SudokuBoard board) {
+        this.state[FILLED] = 0;
+        for (int c = 0; c < 81; ++c) {
+            int n = board.getEntry(c / 9, c % 9);
+            if (1 <= n && n <= 9) {
+                this.state[VALUES + c] = (short) n;
+                this.state[FILLED]++;
+            } else {
+                this.state[VALUES + c] = (short) SudokuBoard.EMPTY_ENTRY;
+            }
+        }
+        this.updateOptions();
+    }
+
+    public final void copyFrom(FlatBoard other) {
+        System.arraycopy(other.state, 0, this.state, 0, STATE_SIZE);
+    }
+
+    /** Rebuild the unit and space options from the numbers on the board **/
+    protected final void updateOptions() {
+        for (int u = 0; u < 27; ++u) {
+            int placed = 0;
+            for (int c: SudokuBoard.UNITS[u])
+                placed |= 1 << this.state[VALUES + c];
+            this.state[UNITS + u] = (short) (ALL & ~placed);
+        }
+        for (int c = 0; c < 81; ++c) {
+            if (this.state[VALUES + c] > SudokuBoard.EMPTY_ENTRY) {
+                this.state[OPTIONS + c] = 0;
+            } else {
+                final int[] units = SudokuBoard.CELL_UNITS[c];
+                this.state[OPTIONS + c] = (short) (this.state[UNITS + units[0]]
+                        & this.state[UNITS + units[1]]
+                        & this.state[UNITS + units[2]]);
+            }
+        }
+    }
+
+    public int getEntry(int i, int j) {
+        return this.state[VALUES + 9 * i + j];
+    }
+
+    /** The mask of numbers that might fill space c **/
+    public int getOptions(int c) {
+        return this.state[OPTIONS + c];
+    }
+
+    public int getFilled() {
+        return this.state[FILLED];
+    }
+
+    public boolean isFilled() {
+        return this.state[FILLED] == 81;
+    }
+
+    /** Set the entry at (i, j) to n only if the value has not been set **/
+    public void setEntry(int i, int j, int n) {
+        this.place(9 * i + j, n);
+    }
+
+    /** Place n in space c and remove n from the options of each peer of c **/
+    protected void place(int c, int n) {
+        if (this.state[VALUES + c] > SudokuBoard.EMPTY_ENTRY)
+            return;
+        final short[] s = this.state;
+        final int bit = 1 << n;
+        s[VALUES + c] = (short) n;
+        s[FILLED]++;
+        s[OPTIONS + c] = 0;
+        for (int u: SudokuBoard.CELL_UNITS[c])
+            s[UNITS + u] &= (short) ~bit;
+        for (int p: SudokuBoard.PEERS[c])
+            s[OPTIONS + p] &= (short) ~bit;
+    }
+
+    /**
+     * Return true if the current state of the board is a valid solution.
+     * That is, each unit contains every number exactly once.
+     */
+    public boolean isSolution() {
+        if (!this.isFilled())
+            return false;
+        for (int[] unit: SudokuBoard.UNITS) {
+            int seen = 0;
+            for (int c: unit)
+                seen |= 1 << this.state[VALUES + c];
+            if (seen != ALL)
+                return false;
+        }
+        return true;
+    }
+
+    public SudokuBoard toSudokuBoard() {
+        int[][] entries = new int[9][9];
+        for (int c = 0; c < 81; ++c)
+            entries[c / 9][c % 9] = this.state[VALUES + c];
+        return new SudokuBoard(entries);
+    }
+
+    public String toString() {
+        return this.toSudokuBoard().toString();
+    }
+}
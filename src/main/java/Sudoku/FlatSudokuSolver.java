@@ -0,0 +1,221 @@
+package Sudoku;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A solver built on FlatBoard. It uses the same logic and guessing as SudokuSolver,
+ * but the frontier is a pool of boards that are reused between nodes, so expanding
+ * a node only copies arrays instead of allocating new boards.
+ */
+public class FlatSudokuSolver extends FlatBoard {
+
+    private FlatBoard[] frontier = new FlatBoard[0];
+    private FlatSudokuSolver work;
+
+    protected GuessStrategy guessStrategy = SudokuSolver.GUESS_STRATEGY.forPuzzle(-1);
+    protected Budget budget = Budget.PER_PUZZLE;
+    private final int[] order = new int[9];
+
+    public FlatSudokuSolver(String s) throws SudokuBoard.SudokuException {
+        super(s);
+    }
+
+    public FlatSudokuSolver(SudokuBoard board) {
+        super(board);
+    }
+
+    public FlatSudokuSolver(FlatBoard other) {
+        super(other);
+    }
+
+    public void setGuessStrategy(GuessStrategy guessStrategy) {
+        this.guessStrategy = guessStrategy;
+    }
+
+    /** Limit each search this solver runs. Searches that go over throw a Budget.ExceededException. **/
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Solve the puzzle. This instance will store the solution.
+     * @return true if a solution was found
+     */
+    public boolean solve() {
+        if (this.search(1, null) == 0)
+            return false;
+        // the search stopped with the solution on the work board
+        this.copyFrom(this.work);
+        return true;
+    }
+
+    /**
+     * Find all possible solutions, quitting once its found
+     * {@link Sudoku.SudokuSolver#MAX_SOLNS} solutions.
+     *
+     * @return A List containing all solutions found.
+     */
+    public List<SudokuBoard> solveAll() {
+        return this.solveAll(SudokuSolver.MAX_SOLNS);
+    }
+
+    /**
+     * Find all possible solutions, quitting once its found `limit` solutions.
+     *
+     * @return A List containing all solutions found.
+     */
+    public List<SudokuBoard> solveAll(int limit) {
+        LinkedList<SudokuBoard> results = new LinkedList<SudokuBoard>();
+        this.search(limit, results);
+        return results;
+    }
+
+    /**
+     * Count the solutions without keeping any, quitting once `limit` have been found.
+     * @return The number of solutions found, at most `limit`.
+     */
+    public int countSolutions(int limit) {
+        return this.search(limit, null);
+    }
+
+    /** Return true if the puzzle has exactly one solution. This stops at the second one. **/
+    public boolean isUnique() {
+        return this.countSolutions(2) == 1;
+    }
+
+    /*
+     * Search for up to `limit` solutions, adding each one to `results` unless it is null.
+     * Return the number of solutions found. If the limit is reached, the work board holds
+     * the last solution.
+     */
+    protected int search(int limit, List<SudokuBoard> results) {
+        int found = 0;
+        if (limit <= 0)
+            return found;
+        FlatSudokuSolver sb = this.workBoard();
+        int size = this.push(0, this);
+        Budget.Meter meter = this.startMeter();
+        while (size > 0) {
+            sb.copyFrom(this.frontier[--size]);
+            meter.tick();
+            if (!sb.applyLogic())
+                continue;
+            if (sb.isFilled()) {
+                if (sb.isSolution()) {
+                    found++;
+                    if (results != null)
+                        results.add(sb.toSudokuBoard());
+                    if (found >= limit)
+                        return found;
+                }
+            } else {
+                size = this.pushGuesses(size, sb);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Fill in naked and hidden singles until neither finds anything new.
+     * @return false if the board reached a contradiction
+     */
+    public boolean applyLogic() {
+        final short[] s = this.state;
+        boolean stateChanged = true;
+        while (stateChanged) {
+            stateChanged = false;
+            for (int c = 0; c < 81; ++c) {
+                if (s[VALUES + c] > SudokuBoard.EMPTY_ENTRY)
+                    continue;
+                int m = s[OPTIONS + c];
+                if (m == 0)
+                    return false;
+                if ((m & (m - 1)) == 0) {
+                    this.place(c, Integer.numberOfTrailingZeros(m));
+                    stateChanged = true;
+                }
+            }
+            if (stateChanged)
+                continue;
+            for (int u = 0; u < 27; ++u) {
+                final int[] unit = SudokuBoard.UNITS[u];
+                int once = 0, twice = 0;
+                for (int c: unit) {
+                    int m = s[OPTIONS + c];
+                    twice |= once & m;
+                    once |= m;
+                }
+                // some number left in the unit has nowhere to go
+                if (once != s[UNITS + u])
+                    return false;
+                for (int singles = once & ~twice; singles != 0; singles &= singles - 1) {
+                    int bit = singles & -singles;
+                    for (int c: unit) {
+                        if ((s[OPTIONS + c] & bit) != 0) {
+                            this.place(c, Integer.numberOfTrailingZeros(bit));
+                            stateChanged = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /* The meter each search ticks once per node */
+    protected Budget.Meter startMeter() {
+        return this.budget.start();
+    }
+
+    /* The space chosen by the guess strategy, or -1 if there are no options anywhere */
+    protected int findMostAttractiveGuess() {
+        return this.guessStrategy.selectSpace(this);
+    }
+
+    /* Push one copy of sb per option at the space the guess strategy picks. Returns the new frontier size. */
+    private int pushGuesses(int size, FlatSudokuSolver sb) {
+        int c = this.guessStrategy.selectSpace(sb);
+        if (c < 0)
+            return size;
+        // the frontier is a stack, so push the option to try first last
+        for (int k = this.guessStrategy.orderOptions(sb, c, this.order) - 1; k >= 0; --k) {
+            size = this.push(size, sb);
+            this.frontier[size - 1].place(c, this.order[k]);
+        }
+        return size;
+    }
+
+    /* Copy board into the frontier slot at index size. Returns the new frontier size. */
+    private int push(int size, FlatBoard board) {
+        if (size == this.frontier.length) {
+            this.frontier = Arrays.copyOf(this.frontier, Math.max(16, 2 * size));
+        }
+        if (this.frontier[size] == null) {
+            this.frontier[size] = new FlatBoard(board);
+        } else {
+            this.frontier[size].copyFrom(board);
+        }
+        return size + 1;
+    }
+
+    private FlatSudokuSolver workBoard() {
+        if (this.work == null)
+            this.work = new FlatSudokuSolver((FlatBoard) this);
+        return this.work;
+    }
+
+    public static SudokuBoard[] solve(FlatSudokuSolver solver, boolean findAll) {
+        if (findAll) {
+            List<SudokuBoard> solns = solver.solveAll();
+            if (solns.size() > 0) {
+                return solns.toArray(new SudokuBoard[0]);
+            }
+        } else if (solver.solve()) {
+            return new SudokuBoard[]{solver.toSudokuBoard()};
+        }
+        return null;
+    }
+}
@@ -0,0 +1,197 @@
+package Sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches a single puzzle with several threads.
+ *
+ * The guess tree is split at each guess: every option at the guessed space becomes a
+ * subtask in a ForkJoinPool. Below `cutoffDepth` guesses, a subtask searches its subtree
+ * sequentially with a TrailSudokuSolver. All subtasks share a count of the solutions found,
+ * and stop as soon as the count reaches the limit.
+ */
+public class ForkJoinSudokuSolver {
+
+    // Number of guesses that are split into subtasks before searching sequentially
+    public static int CUTOFF_DEPTH = 4;
+
+    private static ForkJoinPool sharedPool;
+
+    private final ForkJoinPool pool;
+    private final int cutoffDepth;
+    private Budget budget = Budget.PER_PUZZLE;
+
+    public ForkJoinSudokuSolver(ForkJoinPool pool, int cutoffDepth) {
+        this.pool = pool;
+        this.cutoffDepth = cutoffDepth;
+    }
+
+    /** A solver using a pool with one thread per processor, shared by all such solvers **/
+    public ForkJoinSudokuSolver() {
+        this(sharedPool(), CUTOFF_DEPTH);
+    }
+
+    /**
+     * Limit each search this solver runs. The node limit counts the nodes searched by all threads
+     * together. A search that goes over throws a Budget.ExceededException. If the calling thread
+     * is interrupted, the search stops on all threads and throws a CancellationException.
+     */
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    private static synchronized ForkJoinPool sharedPool() {
+        if (sharedPool == null)
+            sharedPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        return sharedPool;
+    }
+
+    /**
+     * Find up to `limit` solutions, stopping all threads once that many are found.
+     * @return A List containing the solutions found.
+     */
+    public List<SudokuBoard> solveAll(FlatBoard puzzle, int limit) {
+        Search search = new Search(limit, true, this.budget.startShared());
+        this.run(search, puzzle);
+        return new ArrayList<SudokuBoard>(search.results);
+    }
+
+    /**
+     * Count solutions without keeping any, stopping all threads once `limit` are found.
+     * @return The number of solutions found, at most `limit`.
+     */
+    public int countSolutions(FlatBoard puzzle, int limit) {
+        Search search = new Search(limit, false, this.budget.startShared());
+        this.run(search, puzzle);
+        return Math.min(limit, search.found.get());
+    }
+
+    public SudokuBoard[] solve(FlatBoard puzzle, boolean findAll) {
+        List<SudokuBoard> solns = this.solveAll(puzzle, findAll ? SudokuSolver.MAX_SOLNS : 1);
+        if (solns.size() > 0) {
+            return solns.toArray(new SudokuBoard[0]);
+        }
+        return null;
+    }
+
+    private void run(Search search, FlatBoard puzzle) {
+        if (search.limit <= 0)
+            return;
+        ForkJoinTask<Void> task = this.pool.submit(new SearchTask(search, new FlatBoard(puzzle), 0, this.cutoffDepth));
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            // the pool's threads aren't interrupted, so tell them through the meter
+            search.meter.cancel();
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /* The state shared by all the tasks searching one puzzle */
+    private static class Search {
+        final int limit;
+        final boolean keepSolutions;
+        final Budget.Meter meter;
+        final AtomicInteger found = new AtomicInteger();
+        final ConcurrentLinkedQueue<SudokuBoard> results = new ConcurrentLinkedQueue<SudokuBoard>();
+
+        Search(int limit, boolean keepSolutions, Budget.Meter meter) {
+            this.limit = limit;
+            this.keepSolutions = keepSolutions;
+            this.meter = meter;
+        }
+
+        boolean isDone() {
+            return this.found.get() >= this.limit;
+        }
+    }
+
+    /* A trail solver that reports solutions to the shared search, and stops once it is done */
+    private static class Worker extends TrailSudokuSolver {
+        private final Search search;
+
+        Worker(FlatBoard board, Search search) {
+            super(board);
+            this.search = search;
+        }
+
+        @Override
+        protected void foundSolution(List<SudokuBoard> results) {
+            // only the first `limit` solutions are kept, however many threads find them
+            if (this.search.found.incrementAndGet() <= this.search.limit && this.search.keepSolutions)
+                this.search.results.add(this.toSudokuBoard());
+        }
+
+        @Override
+        protected boolean isCancelled() {
+            return this.search.isDone();
+        }
+
+        @Override
+        protected Budget.Meter startMeter() {
+            return this.search.meter;
+        }
+    }
+
+    private static class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // A task only ever lives in its pool, so it is never serialized
+        private final transient Search search;
+        private final transient FlatBoard board;
+        private final int depth;
+        private final int cutoffDepth;
+
+        SearchTask(Search search, FlatBoard board, int depth, int cutoffDepth) {
+            this.search = search;
+            this.board = board;
+            this.depth = depth;
+            this.cutoffDepth = cutoffDepth;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.search.isDone())
+                return;
+            Worker worker = new Worker(this.board, this.search);
+            if (this.depth >= this.cutoffDepth) {
+                worker.search(Integer.MAX_VALUE, null);
+                return;
+            }
+            this.search.meter.tick();
+            if (!worker.applyLogic())
+                return;
+            if (worker.isFilled()) {
+                if (worker.isSolution())
+                    worker.foundSolution(null);
+                return;
+            }
+
+            int c = worker.findMostAttractiveGuess();
+            int[] order = new int[9];
+            int n = worker.guessStrategy.orderOptions(worker, c, order);
+            List<SearchTask> subtasks = new ArrayList<SearchTask>(n);
+            for (int k = 0; k < n; ++k) {
+                FlatBoard child = new FlatBoard(worker);
+                child.place(c, order[k]);
+                subtasks.add(new SearchTask(this.search, child, this.depth + 1, this.cutoffDepth));
+            }
+            invokeAll(subtasks);
+        }
+    }
+}
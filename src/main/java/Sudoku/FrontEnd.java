@@ -8,7 +8,24 @@ public class FrontEnd {
     public static String[] NTHREADS_OPTS = {"-n", "--nThreads"};
     public static String[] HELP_OPTS = {"-h", "--help"};
     public static String[] BENCH_OPTS = {"-b", "--benchmark"};
+    public static String[] WARMUP_OPTS = {"-w", "--warmup"};
+    public static String[] REPEAT_OPTS = {"-r", "--repeat"};
     public static String[] ALL_OPTS = {"-a", "--all"};
+    public static String[] ENGINE_OPTS = {"-e", "--engine"};
+    public static String[] DLX_OPTS = {"-d", "--dlx"};
+    public static String[] LOGIC_OPTS = {"-l", "--logic"};
+    public static String[] GUESS_OPTS = {"-g", "--guess"};
+    public static String[] STREAM_OPTS = {"-t", "--stream"};
+    public static String[] UNORDERED_OPTS = {"-u", "--unordered"};
+    public static String[] FILE_OPTS = {"-f", "--file"};
+    public static String[] OUTPUT_OPTS = {"-o", "--output"};
+    public static String[] MACHINE_OPTS = {"-M", "--machine"};
+    public static String[] CACHE_OPTS = {"-C", "--cache"};
+    public static String[] STORE_OPTS = {"-S", "--store"};
+    public static String[] EXECUTOR_OPTS = {"-x", "--executor"};
+    public static String[] CHUNK_OPTS = {"-c", "--chunk"};
+    public static String[] MILLIS_OPTS = {"-m", "--max-millis"};
+    public static String[] NODES_OPTS = {"-k", "--max-nodes"};
 
     public static String join(String sep, String[] args) {
         String result = "";
@@ -47,9 +64,37 @@ public class FrontEnd {
         System.out.println("  " + helpString(NTHREADS_OPTS, width) + " run with a specified number of threads (defaults to 4)");
         System.out.println("  " + helpString(HELP_OPTS, width)     + " print this help");
         System.out.println("  " + helpString(BENCH_OPTS, width)    + " run the benchmark code");
+        System.out.println("  " + helpString(WARMUP_OPTS, width)   + " with --benchmark, solve everything this many times first");
+        System.out.println("  " + padString("", width)             + "   without reporting it (defaults to 0)");
+        System.out.println("  " + helpString(REPEAT_OPTS, width)   + " with --benchmark, time this many rounds (defaults to 1)");
         System.out.println("  " + helpString(ALL_OPTS, width)      + " find all possible solutions");
+        System.out.println("  " + helpString(ENGINE_OPTS, width)   + " solve with the given engine (" + Engine.names() + ")");
+        System.out.println("  " + helpString(DLX_OPTS, width)      + " solve with dancing links (same as --engine dlx)");
+        System.out.println("  " + helpString(LOGIC_OPTS, width)    + " extra logic for the standard engine, comma-separated:");
+        System.out.println("  " + padString("", width)             + "   " + SudokuSolver.Technique.names());
+        System.out.println("  " + helpString(GUESS_OPTS, width)    + " where to guess and in what order (" + GuessStrategies.names() + ")");
+        System.out.println("  " + helpString(STREAM_OPTS, width)   + " solve and print puzzles as they are read (parallel only)");
+        System.out.println("  " + helpString(UNORDERED_OPTS, width) + " print each result as soon as it is solved, numbered (parallel only)");
+        System.out.println("  " + padString("", width)             + "   --stream and --unordered read stdin and print, so neither");
+        System.out.println("  " + padString("", width)             + "   goes with --file or --output");
+        System.out.println("  " + helpString(EXECUTOR_OPTS, width) + " what the threads are (" + ExecutorKind.names() + ")");
+        System.out.println("  " + padString("", width)             + "   with --benchmark, 'all' times each of them in turn");
+        System.out.println("  " + helpString(CHUNK_OPTS, width)    + " microseconds of work per batch of puzzles (defaults to 1000,");
+        System.out.println("  " + padString("", width)             + "   0 solves each puzzle in its own task)");
+        System.out.println("  " + helpString(MILLIS_OPTS, width)   + " give up on a puzzle after this many milliseconds");
+        System.out.println("  " + helpString(NODES_OPTS, width)    + " give up on a puzzle after searching this many boards");
+        System.out.println("  " + helpString(FILE_OPTS, width)     + " read puzzles from this file (memory-mapped) instead of stdin,");
+        System.out.println("  " + padString("", width)             + "   either text or a PuzzleArchive");
+        System.out.println("  " + helpString(OUTPUT_OPTS, width)   + " write the puzzles and solutions to this PuzzleArchive");
+        System.out.println("  " + padString("", width)             + "   instead of printing them");
+        System.out.println("  " + helpString(MACHINE_OPTS, width)  + " print one line per puzzle: input, status, number of");
+        System.out.println("  " + padString("", width)             + "   solutions and the solutions, separated by tabs");
+        System.out.println("  " + helpString(CACHE_OPTS, width)    + " cache the solutions of this many puzzles, and answer any");
+        System.out.println("  " + padString("", width)             + "   puzzle that is a relabeling, reordering or transpose of one");
+        System.out.println("  " + helpString(STORE_OPTS, width)    + " answer puzzles from the solution store at this path, and");
+        System.out.println("  " + padString("", width)             + "   keep new solutions there (PATH.dat and PATH.idx)");
         System.out.println();
-        System.out.println("The program accepts input on stdin. Puzzles should be one per line.");
+        System.out.println("The program accepts input on stdin (or --file). Puzzles should be one per line.");
         System.out.println("Each puzzle should be 81 characters. Any character not between 1 and 9");
         System.out.println("is interpreted as a blank entry.");
     }
@@ -62,6 +107,7 @@ public class FrontEnd {
         boolean useParallel = true;
         boolean runBenchmark = false;
         boolean findAll = false;
+        boolean machine = false;
 
         for (int i = 0; i < args.length; ++i) {
             if (contains(PARALLEL_OPTS, args[i])) {
@@ -73,6 +119,40 @@ public class FrontEnd {
                 return;
             } else if (contains(NTHREADS_OPTS, args[i])) {
                 i++;
+            } else if (contains(ENGINE_OPTS, args[i])) {
+                i++;
+            } else if (contains(DLX_OPTS, args[i])) {
+                continue;
+            } else if (contains(LOGIC_OPTS, args[i])) {
+                i++;
+            } else if (contains(GUESS_OPTS, args[i])) {
+                i++;
+            } else if (contains(EXECUTOR_OPTS, args[i])) {
+                i++;
+            } else if (contains(CHUNK_OPTS, args[i])) {
+                i++;
+            } else if (contains(MILLIS_OPTS, args[i])) {
+                i++;
+            } else if (contains(NODES_OPTS, args[i])) {
+                i++;
+            } else if (contains(STREAM_OPTS, args[i])) {
+                continue;
+            } else if (contains(UNORDERED_OPTS, args[i])) {
+                continue;
+            } else if (contains(FILE_OPTS, args[i])) {
+                i++;
+            } else if (contains(OUTPUT_OPTS, args[i])) {
+                i++;
+            } else if (contains(MACHINE_OPTS, args[i])) {
+                machine = true;
+            } else if (contains(CACHE_OPTS, args[i])) {
+                i++;
+            } else if (contains(STORE_OPTS, args[i])) {
+                i++;
+            } else if (contains(WARMUP_OPTS, args[i])) {
+                i++;
+            } else if (contains(REPEAT_OPTS, args[i])) {
+                i++;
             } else if (contains(BENCH_OPTS, args[i])) {
                 runBenchmark = true;
             } else if (contains(ALL_OPTS, args[i])) {
@@ -83,17 +163,20 @@ public class FrontEnd {
                 return;
             }
         }
-        if (findAll) {
+        // keep machine-readable output free of anything else
+        if (findAll && !machine) {
             System.out.println("Finding all valid solutions.");
             System.out.println("Quitting once " + SudokuSolver.MAX_SOLNS + " solutions are found.");
         }
         if (runBenchmark) {
             Perf.main(args);
         } else if (useParallel) {
-            System.out.println("Running parallel...");
+            if (!machine)
+                System.out.println("Running parallel...");
             ParallelSudokuSolver.main(args);
         } else {
-            System.out.println("Running standard...");
+            if (!machine)
+                System.out.println("Running standard...");
             SudokuSolver.main(args);
         }
     }
@@ -0,0 +1,177 @@
+package Sudoku;
+
+import java.util.Random;
+
+/**
+ * The available GuessStrategy implementations, and a lookup by name for the command line.
+ */
+public class GuessStrategies {
+
+    /**
+     * Guess at the first space with the fewest options ("minimum remaining values"),
+     * trying the largest number first. This is how the solvers have always guessed.
+     */
+    public static class MinimumRemainingValues implements GuessStrategy {
+        public int selectSpace(Grid grid) {
+            int min = 10;
+            int cmin = -1;
+            for (int c = 0; c < 81; ++c) {
+                int size = Integer.bitCount(grid.getOptions(c));
+                if (size > 0 && size < min) {
+                    min = size;
+                    cmin = c;
+                }
+            }
+            return cmin;
+        }
+
+        public int orderOptions(Grid grid, int c, int[] order) {
+            int k = 0;
+            for (int m = grid.getOptions(c); m != 0; m &= ~Integer.highestOneBit(m))
+                order[k++] = 31 - Integer.numberOfLeadingZeros(m);
+            return k;
+        }
+
+        public GuessStrategy forPuzzle(long index) {
+            return this;
+        }
+    }
+
+    /**
+     * Like MinimumRemainingValues, but break ties in favor of the space with the most
+     * unfilled peers (its "degree"), since a guess there constrains the most other spaces.
+     */
+    public static class MostConstrainingMRV extends MinimumRemainingValues {
+        public int selectSpace(Grid grid) {
+            int min = 10;
+            int maxDegree = -1;
+            int cmin = -1;
+            for (int c = 0; c < 81; ++c) {
+                int size = Integer.bitCount(grid.getOptions(c));
+                if (size == 0 || size > min)
+                    continue;
+                int degree = 0;
+                for (int p: SudokuBoard.PEERS[c]) {
+                    if (grid.getOptions(p) != 0)
+                        degree++;
+                }
+                if (size < min || degree > maxDegree) {
+                    min = size;
+                    maxDegree = degree;
+                    cmin = c;
+                }
+            }
+            return cmin;
+        }
+    }
+
+    /**
+     * Like MinimumRemainingValues, but try first the numbers that are options in the fewest
+     * peers of the space. Those rule out the fewest peer options when placed, so they are the
+     * least likely to lead to a dead end.
+     */
+    public static class DigitFrequency extends MinimumRemainingValues {
+        public int orderOptions(Grid grid, int c, int[] order) {
+            // sort by (frequency << 4 | n), then strip the frequency
+            int k = 0;
+            for (int m = grid.getOptions(c); m != 0; m &= m - 1) {
+                int bit = m & -m;
+                int frequency = 0;
+                for (int p: SudokuBoard.PEERS[c]) {
+                    if ((grid.getOptions(p) & bit) != 0)
+                        frequency++;
+                }
+                int key = (frequency << 4) | Integer.numberOfTrailingZeros(bit);
+                int j = k++;
+                for (; j > 0 && order[j - 1] > key; --j)
+                    order[j] = order[j - 1];
+                order[j] = key;
+            }
+            for (int j = 0; j < k; ++j)
+                order[j] &= 0xF;
+            return k;
+        }
+    }
+
+    /**
+     * Like MinimumRemainingValues, but pick among the spaces with the fewest options at random,
+     * and try the numbers in a random order.
+     *
+     * The random numbers are state, so each solver takes its own instance from forPuzzle(),
+     * seeded from this one's seed and the puzzle's index. A puzzle therefore gets the same
+     * guesses in every run with the same seed, whichever thread solves it and in whatever order.
+     */
+    public static class RandomizedMRV implements GuessStrategy {
+        private final long seed;
+        private final Random random;
+
+        public RandomizedMRV(long seed) {
+            this(seed, -1);
+        }
+
+        private RandomizedMRV(long seed, long index) {
+            this.seed = seed;
+            // spread consecutive indexes apart, as Random's first outputs for close seeds are close
+            this.random = new Random(seed ^ (index * 0x9E3779B97F4A7C15L));
+        }
+
+        public int selectSpace(Grid grid) {
+            int min = 10;
+            int ties = 0;
+            int cmin = -1;
+            for (int c = 0; c < 81; ++c) {
+                int size = Integer.bitCount(grid.getOptions(c));
+                if (size == 0 || size > min)
+                    continue;
+                if (size < min) {
+                    min = size;
+                    ties = 0;
+                }
+                // reservoir sampling: each of the tied spaces is kept with equal probability
+                if (this.random.nextInt(++ties) == 0)
+                    cmin = c;
+            }
+            return cmin;
+        }
+
+        public int orderOptions(Grid grid, int c, int[] order) {
+            int k = 0;
+            for (int m = grid.getOptions(c); m != 0; m &= m - 1)
+                order[k++] = Integer.numberOfTrailingZeros(m);
+            for (int j = k - 1; j > 0; --j) {
+                int r = this.random.nextInt(j + 1);
+                int tmp = order[j];
+                order[j] = order[r];
+                order[r] = tmp;
+            }
+            return k;
+        }
+
+        public GuessStrategy forPuzzle(long index) {
+            return new RandomizedMRV(this.seed, index);
+        }
+    }
+
+    /**
+     * Look up a strategy by name: "mrv", "degree", "frequency", or "random".
+     * A seed can be given for the random strategy as "random:SEED" to make runs repeatable;
+     * without one, the seed is taken from the clock.
+     */
+    public static GuessStrategy forName(String name) {
+        if (name.equalsIgnoreCase("mrv"))
+            return new MinimumRemainingValues();
+        if (name.equalsIgnoreCase("degree"))
+            return new MostConstrainingMRV();
+        if (name.equalsIgnoreCase("frequency"))
+            return new DigitFrequency();
+        if (name.equalsIgnoreCase("random"))
+            return new RandomizedMRV(System.nanoTime());
+        if (name.toLowerCase().startsWith("random:"))
+            return new RandomizedMRV(Long.parseLong(name.substring("random:".length())));
+        throw new IllegalArgumentException("Unknown guess strategy '" + name + "'");
+    }
+
+    public static String names() {
+        return "mrv, degree, frequency, random[:SEED]";
+    }
+}
@@ -0,0 +1,30 @@
+package Sudoku;
+
+/**
+ * Decides where a solver guesses once logic stops placing numbers, and in what order
+ * it tries the numbers there. See GuessStrategies for the implementations.
+ */
+public interface GuessStrategy {
+
+    /** The view of a board a strategy works from **/
+    interface Grid {
+        /** The mask (with the IntSet bit layout) of numbers that might fill space c = 9 * i + j, or 0 if c is filled **/
+        int getOptions(int c);
+    }
+
+    /** @return The space to guess at, or -1 if no space has any options. **/
+    int selectSpace(Grid grid);
+
+    /**
+     * Write the options of space c into `order`, in the order they should be tried.
+     * @return The number of options written.
+     */
+    int orderOptions(Grid grid, int c, int[] order);
+
+    /**
+     * The strategy one solver should use for the puzzle with the given index in its batch
+     * (-1 if it has none). A strategy that keeps state between calls returns a new instance,
+     * so that solvers on different threads never share one; the rest return themselves.
+     */
+    GuessStrategy forPuzzle(long index);
+}
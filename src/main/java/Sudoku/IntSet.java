@@ -15,65 +15,83 @@ public class IntSet {
      *                  98 7654 321
      */
     private short bits;
-    private short size;
 
     public IntSet() {
         this.bits = 0;
-        this.size = 0;
     }
 
     public void add(int n) {
-//        this.size += ~(this.bits >> n) & 1;
-        if (!this.contains(n)) {
-            this.bits |= (1 << n);
-            this.size += 1;
-        }
+        this.bits |= (1 << n);
     }
 
     public void remove(int n) {
-//        this.size -= (this.bits >> n) & 1;
-        if (this.contains(n)) {
-            this.bits &= ~(1 << n);
-            this.size -= 1;
-        }
+        this.bits &= ~(1 << n);
     }
 
     public void clear() {
         this.bits = 0;
-        this.size = 0;
     }
 
     public boolean contains(int n) {
-        return (this.bits & (1 << n)) > 0;
+        return (this.bits & (1 << n)) != 0;
     }
 
     public int[] toArray() {
-        int[] result = new int[this.size];
-        short b = this.bits;
-        int k = 0, n = 1;
-        while (b != 0) {
-            b >>= 1;
-            if ((b & 1) > 0)
-                result[k++] = n;
-            n += 1;
-        }
+        int[] result = new int[this.size()];
+        int k = 0;
+        for (int n = this.getFirst(); n > 0; n = this.next(n))
+            result[k++] = n;
         return result;
     }
 
     public int size() {
-        return size;
+        return Integer.bitCount(this.bits);
     }
 
     public int getFirst() {
-        short b = this.bits;
-        int k = 0, n = 1;
-        while (b != 0) {
-            b >>= 1;
-            if ((b & 1) > 0)
-                return n;
-            n += 1;
-        }
-        return -1;
-    }
-
-}
\ No newline at end of file
+        return first(this.bits);
+    }
+
+    /**
+     * The smallest number in the set that is greater than n, or -1 if there is none.
+     * This iterates over the set without allocating:
+     *    for (int n = set.getFirst(); n > 0; n = set.next(n)) { ... }
+     */
+    public int next(int n) {
+        return first(this.bits & (-2 << n));
+    }
+
+    /** The bits of this set, laid out as described above **/
+    public int mask() {
+        return this.bits;
+    }
+
+    public void setMask(int mask) {
+        this.bits = (short) mask;
+    }
+
+    public void copyFrom(IntSet other) {
+        this.bits = other.bits;
+    }
+
+    /** Remove every number that is not also in other **/
+    public void intersect(IntSet other) {
+        this.bits &= other.bits;
+    }
+
+    /** Add every number in other **/
+    public void union(IntSet other) {
+        this.bits |= other.bits;
+    }
+
+    /** Remove every number in other **/
+    public void subtract(IntSet other) {
+        this.bits &= (short) ~other.bits;
+    }
+
+    /** The smallest number in a mask (with the layout above), or -1 if the mask is empty **/
+    public static int first(int mask) {
+        return mask == 0 ? -1 : Integer.numberOfTrailingZeros(mask);
+    }
+
+}
@@ -0,0 +1,118 @@
+package Sudoku;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts latencies (in nanoseconds) in logarithmic buckets, so that any percentile can be read
+ * back to within 1/16 of its value, however long the tail, in under 8 KB.
+ *
+ * Latencies below 16 ns have a bucket each. Above that, every power of two is split into 16
+ * equal buckets: a latency is bucketed by its highest set bit and the 4 bits below it. A
+ * percentile is reported as the top of the bucket it falls in, so it is never understated.
+ * Recording is a few bit operations and an atomic increment, and may be done from any thread.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS)
+            return (int) Math.max(nanos, 0);
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /* The least latency in bucket b */
+    static long lowest(int b) {
+        if (b < SUB_BUCKETS)
+            return b;
+        int exponent = b / SUB_BUCKETS + SUB_BITS - 1;
+        return (long) (SUB_BUCKETS + b % SUB_BUCKETS) << (exponent - SUB_BITS);
+    }
+
+    /* The greatest latency in bucket b */
+    static long highest(int b) {
+        return b + 1 == BUCKETS ? Long.MAX_VALUE : lowest(b + 1) - 1;
+    }
+
+    public void record(long nanos) {
+        this.counts.incrementAndGet(bucket(nanos));
+        this.total.add(nanos);
+        this.raiseMax(nanos);
+    }
+
+    /** Add every latency recorded in other to this histogram **/
+    public void add(LatencyHistogram other) {
+        for (int b = 0; b < BUCKETS; ++b) {
+            long n = other.counts.get(b);
+            if (n != 0)
+                this.counts.addAndGet(b, n);
+        }
+        this.total.add(other.total.sum());
+        this.raiseMax(other.max.get());
+    }
+
+    private void raiseMax(long nanos) {
+        long max;
+        do {
+            max = this.max.get();
+        } while (nanos > max && !this.max.compareAndSet(max, nanos));
+    }
+
+    public long getCount() {
+        long n = 0;
+        for (int b = 0; b < BUCKETS; ++b)
+            n += this.counts.get(b);
+        return n;
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    public double getMean() {
+        long n = this.getCount();
+        return n == 0 ? 0 : (double) this.total.sum() / n;
+    }
+
+    /**
+     * The latency that `percent` percent of those recorded are at or below, to within 1/16
+     * (and never more than the greatest recorded), or 0 if none were recorded.
+     */
+    public long getPercentile(double percent) {
+        long n = this.getCount();
+        if (n == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percent / 100.0 * n));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; ++b) {
+            seen += this.counts.get(b);
+            if (seen >= rank)
+                return Math.min(highest(b), this.getMax());
+        }
+        return this.getMax();
+    }
+
+    public void reset() {
+        for (int b = 0; b < BUCKETS; ++b)
+            this.counts.set(b, 0);
+        this.total.reset();
+        this.max.set(0);
+    }
+
+    /** "p50 1.234 ms, p90 ..., max ..." with the latencies in milliseconds **/
+    public String summary() {
+        return String.format("p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+                this.getPercentile(50) / 1e6, this.getPercentile(90) / 1e6, this.getPercentile(99) / 1e6,
+                this.getPercentile(99.9) / 1e6, this.getMax() / 1e6);
+    }
+}
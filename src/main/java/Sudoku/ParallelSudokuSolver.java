@@ -1,55 +1,108 @@
 package Sudoku;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class uses a thread pool to work on a stream of puzzles.
  */
 public class ParallelSudokuSolver {
 
+    // The most puzzles a streaming run holds in memory at once (read but not yet written)
+    public static int STREAM_WINDOW = 1024;
+
+    // How long each chunk of puzzles taken by a batch task should take to solve, in microseconds.
+    // 0 submits one task per puzzle instead.
+    public static int CHUNK_MICROS = 1000;
+
     /** A task that solves Sudoku puzzle **/
     public static class SudokuTask implements Callable<SudokuBoard[]> {
-        private String boardString;
+        private CharSequence boardString;
         private boolean findAll;
+        private Engine engine;
+        private SolverStats stats;
+        private long index;
+        private SolverEvents.TaskQueued queued;
 
         public SudokuTask(String boardString, boolean findAll) {
+            this(boardString, findAll, Engine.STANDARD);
+        }
+
+        public SudokuTask(String boardString, boolean findAll, Engine engine) {
+            this(-1, boardString, findAll, engine);
+        }
+
+        /**
+         * A task for the puzzle at `index` in its batch, given as any CharSequence (such as a line
+         * of a PuzzleFile), which is read when the task runs. It counts as queued from now until then.
+         */
+        public SudokuTask(long index, CharSequence boardString, boolean findAll, Engine engine) {
             this.boardString = boardString;
             this.findAll = findAll;
+            this.engine = engine;
+            this.index = index;
+            this.queued = new SolverEvents.TaskQueued();
+            this.queued.begin();
         }
 
+        /**
+         * @return The solutions, null if there are none or the puzzle is invalid, or
+         *         Budget.EXCEEDED if the search went over Budget.PER_PUZZLE. If the task is
+         *         cancelled while running, the search stops with a CancellationException.
+         */
         public SudokuBoard[] call() {
-            List<SudokuBoard> result = null;
+            this.queued.index = this.index;
+            this.queued.commit();
+            Workspace workspace = Workspace.get();
             try {
-                SudokuSolver board = new SudokuSolver(this.boardString);
-                if (findAll) {
-                    result = board.solveAll();
-                } else if (board.solve()) {
-                    result = new LinkedList<SudokuBoard>();
-                    result.add(board);
-                }
+                return workspace.solve(this.index, this.engine, this.boardString, this.findAll);
             } catch (SudokuBoard.SudokuException e) {
-                ;
-            }
-            if (result != null) {
-                return result.toArray(new SudokuBoard[0]);
+                return null;
+            } catch (Budget.ExceededException e) {
+                return Budget.EXCEEDED;
+            } finally {
+                SolverStats stats = workspace.getStats();
+                this.stats = stats != null ? stats.copy() : null;
             }
-            return null;
+        }
+
+        /**
+         * What the search for this task's puzzle did, once the task has run, or null if it
+         * wasn't searched by the standard engine (see Workspace.getStats()).
+         */
+        public SolverStats getStats() {
+            return this.stats;
         }
     }
 
     public static void printResult(SudokuBoard input, SudokuBoard[] output) {
-        System.out.println("Solving:");
-        System.out.println(input);
-        if (output == null || output.length == 0) {
-            System.out.println("No solutions");
+        printResult(System.out, input, output);
+    }
+
+    public static void printResult(PrintStream out, SudokuBoard input, SudokuBoard[] output) {
+        out.println("Solving:");
+        out.println(input);
+        if (output == Budget.EXCEEDED) {
+            out.println("Gave up: over budget");
+        } else if (output == null || output.length == 0) {
+            out.println("No solutions");
         } else {
-            System.out.println("Found " + output.length + " solution(s):");
+            out.println("Found " + output.length + " solution(s):");
             for (int i = 0; i < output.length; ++i) {
-                System.out.println((i + 1) + ".");
-                System.out.println(output[i]);
+                out.println((i + 1) + ".");
+                out.println(output[i]);
             }
         }
     }
@@ -61,59 +114,698 @@ public class ParallelSudokuSolver {
      * @param findAll If true, find all solutions to a given puzzle.
      * @return A 2D array, where each inner array contains all solutions to one puzzle.
      *         The inner arrays may be null to indicate failure or no solutions.
+     * @throws CancellationException If this thread is interrupted. The searches still running are stopped.
      */
     public static SudokuBoard[][] run(String[] inputStrings, int nThreads, boolean findAll) {
-        ExecutorService threadPool = Executors.newFixedThreadPool(nThreads);
+        return run(inputStrings, nThreads, findAll, Engine.STANDARD);
+    }
+
+    /**
+     * Same as above, but solve each puzzle with the given engine.
+     */
+    public static SudokuBoard[][] run(String[] inputStrings, int nThreads, boolean findAll, Engine engine) {
+        return run(inputStrings, nThreads, findAll, engine, ExecutorKind.PLATFORM);
+    }
+
+    /**
+     * Same as above, but run the tasks on the given kind of executor. Unless CHUNK_MICROS is 0,
+     * the puzzles are solved in chunks by batch tasks (see {@link #runBatched}).
+     */
+    public static SudokuBoard[][] run(String[] inputStrings, int nThreads, boolean findAll, Engine engine,
+                                      ExecutorKind executor) {
+        return run(Arrays.asList(inputStrings), nThreads, findAll, engine, executor);
+    }
+
+    /**
+     * Same as above, for puzzles given as any CharSequence, such as the lines of a PuzzleFile.
+     */
+    public static SudokuBoard[][] run(List<? extends CharSequence> inputs, int nThreads, boolean findAll, Engine engine,
+                                      ExecutorKind executor) {
+        if (CHUNK_MICROS > 0)
+            return runBatched(inputs, nThreads, findAll, engine, executor, CHUNK_MICROS * 1000L);
+        ExecutorService threadPool = executor.create(nThreads);
         CompletionService<SudokuBoard[]> pool = new ExecutorCompletionService<SudokuBoard[]>(threadPool);
         List<Future<SudokuBoard[]>> output = new LinkedList<Future<SudokuBoard[]>>();
 
         // add jobs to the queue
-        for (String s: inputStrings) {
-            output.add(pool.submit(new SudokuTask(s, findAll)));
+        int index = 0;
+        for (CharSequence s: inputs) {
+            output.add(pool.submit(new SudokuTask(index++, s, findAll, engine)));
         }
 
         // each input puzzle has an array of 1 or more solutions (or null if no solution)
         SudokuBoard[][] result = new SudokuBoard[output.size()][];
         int i = 0;
-        for (Future<SudokuBoard[]> future: output) {
-            SudokuBoard[] solns = null;
+        try {
+            for (Future<SudokuBoard[]> future: output) {
+                SudokuBoard[] solns = null;
+                try {
+                    solns = future.get();
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                }
+                result[i++] = solns;
+            }
+        } catch (InterruptedException e) {
+            // stop the searches still running rather than return a partial result
+            for (Future<SudokuBoard[]> f: output)
+                f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted after " + i + " results");
+        } finally {
+            threadPool.shutdown();
+        }
+        return result;
+    }
+
+    /** Receives the result for each puzzle, tagged with the puzzle's index in the input **/
+    public interface ResultHandler {
+        void handle(int index, SudokuBoard[] solutions);
+    }
+
+    /* A SudokuTask that remembers which puzzle it is solving */
+    private static class IndexedTask implements Callable<IndexedTask> {
+        final int index;
+        final SudokuTask task;
+        SudokuBoard[] solutions;
+
+        IndexedTask(int index, SudokuTask task) {
+            this.index = index;
+            this.task = task;
+        }
+
+        public IndexedTask call() {
             try {
-                solns = future.get();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            } catch (ExecutionException e) {
+                this.solutions = this.task.call();
+            } catch (CancellationException e) {
+                // stopped by runWithHandler giving up, so no one will see the result
+            } catch (RuntimeException e) {
                 e.printStackTrace();
             }
-            result[i++] = solns;
+            return this;
         }
+    }
+
+    /**
+     * Solve all of the given puzzles, passing each result to `handler` as soon as its puzzle is
+     * solved. Results arrive in the order the puzzles finish, not the input order, so a slow
+     * puzzle doesn't hold up the ones after it. The handler is only called from this thread.
+     * If this thread is interrupted, the searches are stopped and a CancellationException is
+     * thrown, so a return means every result was handled.
+     */
+    public static void runAsCompleted(String[] inputStrings, int nThreads, boolean findAll, Engine engine,
+                                      ExecutorKind executor, ResultHandler handler) {
+        runWithHandler(inputStrings, nThreads, findAll, engine, executor, handler, 0);
+    }
 
-        threadPool.shutdown();
+    /**
+     * Same as above, but pass the results to `handler` in input order. Finished results wait
+     * in a reordering buffer until the ones before them are handled. At most `window` puzzles
+     * are submitted past the first unhandled one, which bounds the buffer (and how far a slow
+     * puzzle lets the others get ahead).
+     */
+    public static void runInOrder(String[] inputStrings, int nThreads, boolean findAll, Engine engine,
+                                  ExecutorKind executor, ResultHandler handler, int window) {
+        runWithHandler(inputStrings, nThreads, findAll, engine, executor, handler, window);
+    }
+
+    /* Hand results over as they complete if window is 0, otherwise in order through a buffer of that size */
+    private static void runWithHandler(String[] inputStrings, int nThreads, boolean findAll, Engine engine,
+                                       ExecutorKind executor, ResultHandler handler, int window) {
+        ExecutorService threadPool = executor.create(nThreads);
+        CompletionService<IndexedTask> pool = new ExecutorCompletionService<IndexedTask>(threadPool);
+        int ahead = window > 0 ? window : inputStrings.length;
+        IndexedTask[] pending = window > 0 ? new IndexedTask[window] : null;
+        int submitted = 0;
+        int handled = 0;
+        try {
+            while (handled < inputStrings.length) {
+                while (submitted < inputStrings.length && submitted - handled < ahead) {
+                    pool.submit(new IndexedTask(submitted, new SudokuTask(submitted, inputStrings[submitted], findAll, engine)));
+                    submitted++;
+                }
+                IndexedTask done = pool.take().get();
+                if (pending == null) {
+                    handler.handle(done.index, done.solutions);
+                    handled++;
+                    continue;
+                }
+                pending[done.index % window] = done;
+                for (IndexedTask t = pending[handled % window]; t != null; t = pending[handled % window]) {
+                    pending[handled % window] = null;
+                    handler.handle(t.index, t.solutions);
+                    handled++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted after handling " + handled + " results");
+        } catch (ExecutionException e) {
+            // IndexedTask catches everything the solvers throw
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            threadPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Solve all of the given puzzles with one batch task per thread. Each task repeatedly takes
+     * the next contiguous chunk of puzzles and writes their solutions straight into the result,
+     * so there is no per-puzzle task or Future.
+     *
+     * A task sizes each chunk from its own running average of the time per puzzle, so that a
+     * chunk takes about `chunkNanos`. Chunks are also never more than a share of the puzzles
+     * left, so they shrink towards the end of the input and no thread is left with a long tail.
+     *
+     * If this thread is interrupted, the tasks are stopped and a CancellationException is thrown.
+     *
+     * When they are being recorded, each puzzle has a TaskQueued event from the start of the
+     * batch until its chunk is taken, and a TaskFinished event from being solved until the
+     * batch returns.
+     */
+    public static SudokuBoard[][] runBatched(String[] inputStrings, int nThreads, boolean findAll, Engine engine,
+                                             ExecutorKind executor, long chunkNanos) {
+        return runBatched(Arrays.asList(inputStrings), nThreads, findAll, engine, executor, chunkNanos);
+    }
+
+    /**
+     * Same as above, for puzzles given as any CharSequence, such as the lines of a PuzzleFile.
+     */
+    public static SudokuBoard[][] runBatched(List<? extends CharSequence> inputs, int nThreads, boolean findAll,
+                                             Engine engine, ExecutorKind executor, long chunkNanos) {
+        SudokuBoard[][] result = new SudokuBoard[inputs.size()][];
+        SolverEvents.TaskQueued[] queued = SolverEvents.queued(result.length);
+        SolverEvents.TaskFinished[] finished = SolverEvents.finished(result.length);
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService threadPool = executor.create(nThreads);
+        List<Future<?>> tasks = new ArrayList<Future<?>>(nThreads);
+        for (int t = 0; t < nThreads; ++t) {
+            tasks.add(threadPool.submit(new BatchTask(inputs, result, next, nThreads, findAll, engine, chunkNanos,
+                    queued, finished)));
+        }
+        try {
+            for (Future<?> task: tasks) {
+                try {
+                    task.get();
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Future<?> t: tasks)
+                t.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted");
+        } finally {
+            threadPool.shutdown();
+        }
+        if (finished != null) {
+            for (SolverEvents.TaskFinished event: finished) {
+                if (event != null)
+                    event.commit();
+            }
+        }
         return result;
     }
 
+    /* Solves chunks of puzzles until none are left */
+    private static class BatchTask implements Runnable {
+        private final List<? extends CharSequence> inputs;
+        private final SudokuBoard[][] result;
+        private final AtomicInteger next;
+        private final int nTasks;
+        private final boolean findAll;
+        private final Engine engine;
+        private final long chunkNanos;
+
+        // each puzzle's events, or null when they aren't being recorded
+        private final SolverEvents.TaskQueued[] queued;
+        private final SolverEvents.TaskFinished[] finished;
+
+        // the average time per puzzle over the chunks solved so far, or 0 before the first
+        private long nanosPerPuzzle = 0;
+
+        BatchTask(List<? extends CharSequence> inputs, SudokuBoard[][] result, AtomicInteger next, int nTasks,
+                  boolean findAll, Engine engine, long chunkNanos, SolverEvents.TaskQueued[] queued,
+                  SolverEvents.TaskFinished[] finished) {
+            this.inputs = inputs;
+            this.result = result;
+            this.next = next;
+            this.nTasks = nTasks;
+            this.findAll = findAll;
+            this.engine = engine;
+            this.chunkNanos = chunkNanos;
+            this.queued = queued;
+            this.finished = finished;
+        }
+
+        public void run() {
+            Workspace workspace = Workspace.get();
+            while (true) {
+                int start, size;
+                do {
+                    start = this.next.get();
+                    if (start >= this.inputs.size())
+                        return;
+                    size = this.chunkSize(this.inputs.size() - start);
+                } while (!this.next.compareAndSet(start, start + size));
+
+                if (this.queued != null) {
+                    for (int i = start; i < start + size; ++i)
+                        this.queued[i].commit();
+                }
+                long begin = System.nanoTime();
+                for (int i = start; i < start + size; ++i) {
+                    try {
+                        this.result[i] = workspace.solve(i, this.engine, this.inputs.get(i), this.findAll);
+                    } catch (SudokuBoard.SudokuException e) {
+                        this.result[i] = null;
+                    } catch (Budget.ExceededException e) {
+                        this.result[i] = Budget.EXCEEDED;
+                    } catch (CancellationException e) {
+                        return;
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                    if (this.finished != null) {
+                        SolverEvents.TaskFinished event = new SolverEvents.TaskFinished();
+                        event.index = i;
+                        event.begin();
+                        this.finished[i] = event;
+                    }
+                }
+                long perPuzzle = (System.nanoTime() - begin) / size;
+                // weight the latest chunk by a quarter, so the size follows changes in difficulty
+                this.nanosPerPuzzle = this.nanosPerPuzzle == 0 ? perPuzzle : (3 * this.nanosPerPuzzle + perPuzzle) / 4;
+            }
+        }
+
+        /* The number of puzzles to take next, given that `remaining` have not been taken */
+        private int chunkSize(int remaining) {
+            // start with a single puzzle to measure
+            long byTime = this.nanosPerPuzzle == 0 ? 1 : this.chunkNanos / Math.max(1, this.nanosPerPuzzle);
+            long byTail = remaining / (2L * this.nTasks);
+            return (int) Math.max(1, Math.min(byTime, byTail));
+        }
+    }
+
+    /* A puzzle moving through a streaming run: read and parsed, then solved, then written */
+    private static class Job {
+        final long index;
+        final SudokuBoard input;
+        final String line;
+        String error;
+        SudokuBoard[] solutions;
+
+        // From being read to being taken by a worker, and from being solved to being written
+        final SolverEvents.TaskQueued queued = new SolverEvents.TaskQueued();
+        final SolverEvents.TaskFinished finished = new SolverEvents.TaskFinished();
+
+        /*
+         * A puzzle, or (if `input` is null) the line that couldn't be read and why. If the
+         * solver fails on a puzzle, the worker sets `error` to why.
+         */
+        Job(long index, SudokuBoard input, String line, String error) {
+            this.index = index;
+            this.input = input;
+            this.line = line;
+            this.error = error;
+        }
+    }
+
+    /*
+     * Tells a worker to stop, or (on the completed queue) tells the writer that the input
+     * ended after `index` puzzles. The reader also passes on its IOException this way.
+     */
+    private static class EndOfInput extends Job {
+        final IOException exception;
+
+        EndOfInput(long index, IOException exception) {
+            super(index, null, null, null);
+            this.exception = exception;
+        }
+    }
+
+    /**
+     * Solve puzzles as they are read from `in`, writing each result to `out` in input order
+     * while later puzzles are still being read and solved.
+     *
+     * A reader thread parses each line, `nThreads` workers solve them, and the calling thread
+     * writes the results. At most `window` puzzles are in flight at once: the reader waits
+     * for a result to be written before it reads past that, so memory use does not grow with
+     * the size of the input. A slow puzzle holds up the output, and eventually the reader,
+     * until it is solved.
+     */
+    public static void runStreaming(InputStream in, PrintStream out, int nThreads, boolean findAll,
+                                    Engine engine, int window) throws IOException {
+        runStreaming(in, out, nThreads, findAll, engine, window, ExecutorKind.PLATFORM);
+    }
+
+    /**
+     * Same as above, but run the workers on the given kind of executor.
+     */
+    public static void runStreaming(InputStream in, final PrintStream out, int nThreads, boolean findAll,
+                                    Engine engine, int window, ExecutorKind executor) throws IOException {
+        stream(in, new Output() {
+            public void write(Job job) {
+                if (job.input == null) {
+                    out.println(job.error);
+                } else if (job.error != null) {
+                    out.println("Solving:");
+                    out.println(job.input);
+                    out.println("Failed: " + job.error);
+                } else {
+                    printResult(out, job.input, job.solutions);
+                }
+            }
+
+            public void flush() {
+                out.flush();
+            }
+        }, nThreads, findAll, engine, window, executor);
+    }
+
+    /**
+     * Same as above, but write each result as a line of machine-readable output (see ResultWriter).
+     */
+    public static void runStreaming(InputStream in, final ResultWriter out, int nThreads, boolean findAll,
+                                    Engine engine, int window, ExecutorKind executor) throws IOException {
+        stream(in, new Output() {
+            public void write(Job job) throws IOException {
+                if (job.input == null) {
+                    out.writeInvalid(job.line);
+                } else if (job.error != null) {
+                    out.writeFailed(job.input);
+                } else {
+                    out.write(job.input, job.solutions);
+                }
+            }
+
+            public void flush() throws IOException {
+                out.flush();
+            }
+        }, nThreads, findAll, engine, window, executor);
+    }
+
+    /* Where a streaming run writes its results, in input order */
+    private interface Output {
+        void write(Job job) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    private static void stream(InputStream in, Output out, int nThreads, boolean findAll,
+                               Engine engine, int window, ExecutorKind executor) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        final Semaphore inFlight = new Semaphore(window);
+        final BlockingQueue<Job> todo = new ArrayBlockingQueue<Job>(window);
+        final BlockingQueue<Job> done = new LinkedBlockingQueue<Job>();
+
+        ExecutorService workers = executor.create(nThreads);
+        for (int t = 0; t < nThreads; ++t) {
+            workers.execute(new Worker(todo, done, findAll, engine));
+        }
+        Thread readerThread = new Thread(new Reader(reader, inFlight, todo, done, nThreads), "sudoku-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+
+        // results arrive in any order; hold each one in its slot until the ones before it are written
+        Job[] pending = new Job[window];
+        long next = 0;
+        long total = Long.MAX_VALUE;
+        IOException readError = null;
+        try {
+            while (next < total) {
+                Job job = done.poll();
+                if (job == null) {
+                    // nothing more to write for now, so let out what has been written so far
+                    out.flush();
+                    job = done.take();
+                }
+                if (job instanceof EndOfInput) {
+                    total = job.index;
+                    readError = ((EndOfInput) job).exception;
+                    continue;
+                }
+                pending[(int) (job.index % window)] = job;
+                for (int slot = (int) (next % window); pending[slot] != null; slot = (int) (next % window)) {
+                    Job ready = pending[slot];
+                    pending[slot] = null;
+                    out.write(ready);
+                    ready.finished.index = ready.index;
+                    ready.finished.commit();
+                    next++;
+                    inFlight.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            readerThread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted after writing " + next + " results");
+        } finally {
+            workers.shutdownNow();
+            out.flush();
+        }
+        if (readError != null)
+            throw readError;
+    }
+
+    /* Reads and parses one puzzle per line, waiting whenever the window is full */
+    private static class Reader implements Runnable {
+        private final BufferedReader in;
+        private final Semaphore inFlight;
+        private final BlockingQueue<Job> todo;
+        private final BlockingQueue<Job> done;
+        private final int nWorkers;
+
+        Reader(BufferedReader in, Semaphore inFlight, BlockingQueue<Job> todo, BlockingQueue<Job> done, int nWorkers) {
+            this.in = in;
+            this.inFlight = inFlight;
+            this.todo = todo;
+            this.done = done;
+            this.nWorkers = nWorkers;
+        }
+
+        public void run() {
+            long count = 0;
+            IOException exception = null;
+            try {
+                String line;
+                while ((line = this.in.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty())
+                        continue;
+                    this.inFlight.acquire();
+                    Job job;
+                    SolverEvents.PuzzleParsed parsed = new SolverEvents.PuzzleParsed();
+                    parsed.begin();
+                    try {
+                        job = new Job(count, new SudokuBoard(line), null, null);
+                        parsed.index = count;
+                        parsed.commit();
+                    } catch (SudokuBoard.SudokuException e) {
+                        job = new Job(count, null, line, e.getMessage());
+                    }
+                    job.queued.begin();
+                    this.todo.put(job);
+                    count++;
+                }
+            } catch (IOException e) {
+                exception = e;
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                for (int t = 0; t < this.nWorkers; ++t)
+                    this.todo.put(new EndOfInput(count, null));
+                this.done.put(new EndOfInput(count, exception));
+            } catch (InterruptedException e) {
+                // the writer has given up; nothing is waiting on us
+            }
+        }
+    }
+
+    /* Solves puzzles from the todo queue until it sees the end of the input */
+    private static class Worker implements Runnable {
+        private final BlockingQueue<Job> todo;
+        private final BlockingQueue<Job> done;
+        private final boolean findAll;
+        private final Engine engine;
+
+        Worker(BlockingQueue<Job> todo, BlockingQueue<Job> done, boolean findAll, Engine engine) {
+            this.todo = todo;
+            this.done = done;
+            this.findAll = findAll;
+            this.engine = engine;
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    Job job = this.todo.take();
+                    if (job instanceof EndOfInput)
+                        return;
+                    job.queued.index = job.index;
+                    job.queued.commit();
+                    try {
+                        if (job.input != null)
+                            job.solutions = Workspace.get().solve(job.index, this.engine, job.input, this.findAll);
+                    } catch (Budget.ExceededException e) {
+                        job.solutions = Budget.EXCEEDED;
+                    } catch (CancellationException e) {
+                        return;
+                    } catch (Throwable e) {
+                        // report the failure as this puzzle's result and go on to the next one
+                        job.error = e.toString();
+                        e.printStackTrace();
+                    } finally {
+                        // the writer waits for every puzzle in order, so each one is posted however
+                        // it ended; `done` is unbounded, so this never waits or throws
+                        job.finished.begin();
+                        this.done.add(job);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // shut down by the writer
+            }
+        }
+    }
+
     public static void main(String args[]) throws IOException {
         int numThreads = 4;
         boolean findAll = false;
+        Engine engine = Engine.STANDARD;
+        boolean stream = false;
+        boolean unordered = false;
+        String file = null;
+        String output = null;
+        boolean machine = false;
+        ExecutorKind executor = ExecutorKind.PLATFORM;
         for (int i = 0; i < args.length; ++i) {
             if (FrontEnd.contains(FrontEnd.NTHREADS_OPTS, args[i])) {
                 numThreads = Integer.parseInt(args[++i]);
+            } else if (FrontEnd.contains(FrontEnd.EXECUTOR_OPTS, args[i])) {
+                executor = ExecutorKind.forName(args[++i]);
+            } else if (FrontEnd.contains(FrontEnd.CHUNK_OPTS, args[i])) {
+                CHUNK_MICROS = Integer.parseInt(args[++i]);
+            } else if (FrontEnd.contains(FrontEnd.STREAM_OPTS, args[i])) {
+                stream = true;
+            } else if (FrontEnd.contains(FrontEnd.UNORDERED_OPTS, args[i])) {
+                unordered = true;
+            } else if (FrontEnd.contains(FrontEnd.FILE_OPTS, args[i])) {
+                file = args[++i];
+            } else if (FrontEnd.contains(FrontEnd.OUTPUT_OPTS, args[i])) {
+                output = args[++i];
+            } else if (FrontEnd.contains(FrontEnd.MACHINE_OPTS, args[i])) {
+                machine = true;
+            } else if (FrontEnd.contains(FrontEnd.CACHE_OPTS, args[i])) {
+                Workspace.CACHE = new SolutionCache(Integer.parseInt(args[++i]));
+            } else if (FrontEnd.contains(FrontEnd.STORE_OPTS, args[i])) {
+                Workspace.openStore(Paths.get(args[++i]));
+            } else if (FrontEnd.contains(FrontEnd.MILLIS_OPTS, args[i])) {
+                Budget.PER_PUZZLE = Budget.PER_PUZZLE.withMillis(Long.parseLong(args[++i]));
+            } else if (FrontEnd.contains(FrontEnd.NODES_OPTS, args[i])) {
+                Budget.PER_PUZZLE = Budget.PER_PUZZLE.withNodes(Long.parseLong(args[++i]));
             } else if (FrontEnd.contains(FrontEnd.ALL_OPTS, args[i])) {
                 findAll = true;
+            } else if (FrontEnd.contains(FrontEnd.ENGINE_OPTS, args[i])) {
+                engine = Engine.forName(args[++i]);
+            } else if (FrontEnd.contains(FrontEnd.DLX_OPTS, args[i])) {
+                engine = Engine.DLX;
+            } else if (FrontEnd.contains(FrontEnd.LOGIC_OPTS, args[i])) {
+                SudokuSolver.TECHNIQUES = SudokuSolver.Technique.parse(args[++i]);
+            } else if (FrontEnd.contains(FrontEnd.GUESS_OPTS, args[i])) {
+                SudokuSolver.GUESS_STRATEGY = GuessStrategies.forName(args[++i]);
             }
         }
 
-        String[] inputs = Perf.getPuzzles(System.in);
-        System.out.println("Using " + numThreads + " threads");
-        SudokuBoard[][] output = run(inputs, numThreads, findAll);
-        assert(inputs.length == output.length);
+        if ((stream || unordered) && (file != null || output != null)) {
+            System.out.println("--stream and --unordered read stdin and print, so they can't be used with --file or --output");
+            FrontEnd.printHelp();
+            return;
+        }
+        if (!machine)
+            System.out.println("Using " + numThreads + " threads");
+        if (file != null) {
+            List<CharSequence> puzzles = PuzzleArchive.openPuzzles(Paths.get(file));
+            outputResults(puzzles, run(puzzles, numThreads, findAll, engine, executor), output, machine);
+            return;
+        }
+        if (stream) {
+            if (machine)
+                runStreaming(System.in, new ResultWriter(System.out), numThreads, findAll, engine, STREAM_WINDOW, executor);
+            else
+                runStreaming(System.in, System.out, numThreads, findAll, engine, STREAM_WINDOW, executor);
+            return;
+        }
+
+        final String[] inputs = Perf.getPuzzles(System.in);
+        if (unordered && machine) {
+            final ResultWriter writer = new ResultWriter(System.out);
+            runAsCompleted(inputs, numThreads, findAll, engine, executor, new ResultHandler() {
+                public void handle(int index, SudokuBoard[] solutions) {
+                    try {
+                        writer.write(inputs[index], solutions);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+            writer.flush();
+            return;
+        }
+        if (unordered) {
+            runAsCompleted(inputs, numThreads, findAll, engine, executor, new ResultHandler() {
+                public void handle(int index, SudokuBoard[] solutions) {
+                    System.out.println("Puzzle " + (index + 1) + ":");
+                    try {
+                        printResult(new SudokuBoard(inputs[index]), solutions);
+                    } catch (SudokuBoard.SudokuException e) {
+                        System.out.println(e.getMessage());
+                    }
+                }
+            });
+            return;
+        }
+        outputResults(Arrays.asList(inputs), run(inputs, numThreads, findAll, engine, executor), output, machine);
+    }
+
+    /*
+     * Write the results to the archive at `archive` if it is not null, otherwise to stdout: one
+     * line per puzzle if `machine` is true, or printed in full
+     */
+    static void outputResults(List<? extends CharSequence> inputs, SudokuBoard[][] outputs, String archive,
+                              boolean machine) throws IOException {
+        if (archive != null) {
+            PuzzleArchive.writeResults(Paths.get(archive), inputs, outputs);
+        } else if (machine) {
+            ResultWriter writer = new ResultWriter(System.out);
+            writeResults(writer, inputs, outputs);
+            writer.flush();
+        } else {
+            printResults(inputs, outputs);
+        }
+    }
+
+    /** Write each input puzzle with its solutions as one line of machine-readable output **/
+    public static void writeResults(ResultWriter out, List<? extends CharSequence> inputs, SudokuBoard[][] outputs)
+            throws IOException {
+        assert(inputs.size() == outputs.length);
+        for (int i = 0; i < outputs.length; ++i)
+            out.write(inputs.get(i), outputs[i]);
+    }
+
+    /* Print each input puzzle with its solutions, or the reason it couldn't be read */
+    static void printResults(List<? extends CharSequence> inputs, SudokuBoard[][] output) {
+        assert(inputs.size() == output.length);
+        SudokuBoard input = new SudokuBoard();
         for (int i = 0; i < output.length; ++i) {
             try {
-                SudokuBoard input = new SudokuBoard(inputs[i]);
+                input.load(inputs.get(i));
                 printResult(input, output[i]);
             } catch (SudokuBoard.SudokuException e) {
                 System.out.println(e.getMessage());
             }
         }
-
     }
 }
@@ -1,6 +1,8 @@
 package Sudoku;
 
 import java.io.*;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -12,8 +14,8 @@ public class Perf {
     public static String[] getPuzzles(InputStream is) throws IOException {
         List<String> puzzles = new LinkedList<String>();
         BufferedReader in = new BufferedReader(new InputStreamReader(is));
-        while (in.ready()) {
-            String s = in.readLine().trim();
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            String s = line.trim();
             if (!s.isEmpty())
                 puzzles.add(s);
         }
@@ -24,16 +26,20 @@ public class Perf {
      * @param boards Each inner array of SudokuBoards represents all the solutions to a single puzzle.
      *               Any inner array (e.g. SudokuBoard[i]) may be null, indicating we failed to solve
      *               the puzzle (invalid input puzzle, badly-formatted input, bugs, etc).
-     * @return An int[]{nBadSolutions, nUnsolvable} where nUnsolvable is the number of puzzles
-     *         for which no solutions were found, and nBadSolutions indicates a "solution" was given
-     *         that is not actually a valid solution.
+     * @return An int[]{nBadSolutions, nUnsolvable, nOverBudget} where nUnsolvable is the number of
+     *         puzzles for which no solutions were found, nBadSolutions indicates a "solution" was given
+     *         that is not actually a valid solution, and nOverBudget is the number of puzzles given up
+     *         on because they went over their {@link Budget}.
      */
     public static int[] verify(SudokuBoard[][] boards) {
         int nBadSolutions = 0;
         int nUnsolvable = 0;
+        int nOverBudget = 0;
         for (SudokuBoard[] solns: boards) {
             if (solns == null) {
                 nUnsolvable += 1;
+            } else if (solns == Budget.EXCEEDED) {
+                nOverBudget += 1;
             } else {
                 for (SudokuBoard b: solns) {
                     if (!b.isSolution())
@@ -41,13 +47,18 @@ public class Perf {
                 }
             }
         }
-        return new int[]{nBadSolutions, nUnsolvable};
+        return new int[]{nBadSolutions, nUnsolvable, nOverBudget};
     }
 
     public static void main(String args[]) throws IOException {
         boolean useParallel = true;
         int numThreads = 4;
         boolean findAll = false;
+        Engine engine = Engine.STANDARD;
+        ExecutorKind[] executors = {ExecutorKind.PLATFORM};
+        String file = null;
+        int warmup = 0;
+        int repeat = 1;
         for (int i = 0; i < args.length; ++i) {
             if (FrontEnd.contains(FrontEnd.PARALLEL_OPTS, args[i])) {
                 useParallel = true;
@@ -55,44 +66,153 @@ public class Perf {
                 useParallel = false;
             } else if (FrontEnd.contains(FrontEnd.NTHREADS_OPTS, args[i])) {
                 numThreads = Integer.parseInt(args[++i]);
+            } else if (FrontEnd.contains(FrontEnd.EXECUTOR_OPTS, args[i])) {
+                String name = args[++i];
+                executors = name.equalsIgnoreCase("all")
+                        ? ExecutorKind.values()
+                        : new ExecutorKind[]{ExecutorKind.forName(name)};
+            } else if (FrontEnd.contains(FrontEnd.WARMUP_OPTS, args[i])) {
+                warmup = Integer.parseInt(args[++i]);
+            } else if (FrontEnd.contains(FrontEnd.REPEAT_OPTS, args[i])) {
+                repeat = Integer.parseInt(args[++i]);
+            } else if (FrontEnd.contains(FrontEnd.FILE_OPTS, args[i])) {
+                file = args[++i];
+            } else if (FrontEnd.contains(FrontEnd.CHUNK_OPTS, args[i])) {
+                ParallelSudokuSolver.CHUNK_MICROS = Integer.parseInt(args[++i]);
+            } else if (FrontEnd.contains(FrontEnd.CACHE_OPTS, args[i])) {
+                Workspace.CACHE = new SolutionCache(Integer.parseInt(args[++i]));
+            } else if (FrontEnd.contains(FrontEnd.STORE_OPTS, args[i])) {
+                Workspace.openStore(Paths.get(args[++i]));
+            } else if (FrontEnd.contains(FrontEnd.MILLIS_OPTS, args[i])) {
+                Budget.PER_PUZZLE = Budget.PER_PUZZLE.withMillis(Long.parseLong(args[++i]));
+            } else if (FrontEnd.contains(FrontEnd.NODES_OPTS, args[i])) {
+                Budget.PER_PUZZLE = Budget.PER_PUZZLE.withNodes(Long.parseLong(args[++i]));
             } else if (FrontEnd.contains(FrontEnd.ALL_OPTS, args[i])) {
                 findAll = true;
+            } else if (FrontEnd.contains(FrontEnd.ENGINE_OPTS, args[i])) {
+                engine = Engine.forName(args[++i]);
+            } else if (FrontEnd.contains(FrontEnd.DLX_OPTS, args[i])) {
+                engine = Engine.DLX;
+            } else if (FrontEnd.contains(FrontEnd.LOGIC_OPTS, args[i])) {
+                SudokuSolver.TECHNIQUES = SudokuSolver.Technique.parse(args[++i]);
+            } else if (FrontEnd.contains(FrontEnd.GUESS_OPTS, args[i])) {
+                SudokuSolver.GUESS_STRATEGY = GuessStrategies.forName(args[++i]);
             }
         }
 
+        // read outside each puzzle's latency, so counting doesn't show up in the percentiles
+        Workspace.COUNT_ALLOCATIONS = true;
+        Workspace.LATENCIES = new LatencyHistogram();
+        if (SolverStats.ENABLED)
+            Workspace.STATS = new SolverStats();
+
         // read in puzzles
         long start = System.nanoTime();
         System.out.println("Loading puzzles...");
-        String[] puzzles = getPuzzles(System.in);
+        List<? extends CharSequence> puzzles = file != null
+                ? PuzzleArchive.openPuzzles(Paths.get(file))
+                : Arrays.asList(getPuzzles(System.in));
         double duration = (System.nanoTime() - start) / ONE_MIL;
         System.out.println("  Done (" + duration + " ms)");
 
         // solve puzzles
-        System.out.println("Solving " + puzzles.length + " puzzles");
-        SudokuBoard[][] solutions = null;
-        if (useParallel) {
-            System.out.println("Running in parallel with " + numThreads + " threads...");
-            start = System.nanoTime();
-            solutions = ParallelSudokuSolver.run(puzzles, numThreads, findAll);
-            duration = (System.nanoTime() - start) / ONE_BIL;
-        } else {
+        System.out.println("Solving " + puzzles.size() + " puzzles");
+        if (!useParallel) {
             System.out.println("Running standard...");
-            start = System.nanoTime();
-            solutions = SudokuSolver.run(puzzles, findAll);
-            duration = (System.nanoTime() - start) / ONE_BIL;
+            runRounds(puzzles, warmup, repeat, 0, findAll, engine, null);
+            return;
+        }
+        for (ExecutorKind executor: executors) {
+            System.out.println("Running in parallel with " + numThreads + " threads ("
+                    + executor.name().toLowerCase() + " executor)...");
+            runRounds(puzzles, warmup, repeat, numThreads, findAll, engine, executor);
+        }
+    }
+
+    /*
+     * Solve the puzzles `warmup` times without reporting, then `repeat` times reporting each
+     * round, and then the latencies over all of the rounds reported. Solve them one at a time
+     * when executor is null.
+     */
+    private static void runRounds(List<? extends CharSequence> puzzles, int warmup, int repeat, int numThreads,
+                                  boolean findAll, Engine engine, ExecutorKind executor) {
+        LatencyHistogram allRounds = new LatencyHistogram();
+        for (int round = 1 - warmup; round <= repeat; ++round) {
+            Workspace.resetAllocationCount();
+            Workspace.LATENCIES.reset();
+            if (Workspace.STATS != null)
+                Workspace.STATS.reset();
+            clearCache();
+            long start = System.nanoTime();
+            SudokuBoard[][] solutions = executor == null
+                    ? SudokuSolver.run(puzzles, findAll, engine)
+                    : ParallelSudokuSolver.run(puzzles, numThreads, findAll, engine, executor);
+            double duration = (System.nanoTime() - start) / ONE_BIL;
+            if (round <= 0) {
+                System.out.println("Warmup round " + (round + warmup) + " took " + duration + " seconds");
+                continue;
+            }
+            if (repeat > 1)
+                System.out.println("Round " + round + " of " + repeat + ":");
+            report(puzzles.size(), duration, solutions);
+            allRounds.add(Workspace.LATENCIES);
         }
-        double durationPerPuzzle = duration * 1000.0 / puzzles.length;
+        if (repeat > 1)
+            System.out.println("All " + repeat + " rounds: " + allRounds.summary());
+    }
+
+    /*
+     * Start each run with an empty cache, so that runs don't answer from each other's solutions.
+     * The store is meant to outlast runs, so it keeps its solutions and only counts afresh.
+     */
+    private static void clearCache() {
+        if (Workspace.CACHE != null)
+            Workspace.CACHE.clear();
+        if (Workspace.STORE != null)
+            Workspace.STORE.resetCounts();
+    }
+
+    /* Print the time taken to solve nPuzzles, and verify the solutions */
+    private static void report(int nPuzzles, double duration, SudokuBoard[][] solutions) {
+        double durationPerPuzzle = duration * 1000.0 / nPuzzles;
         System.out.println("Took " + duration + " seconds");
         System.out.println("  " + durationPerPuzzle + " ms per puzzle");
+        System.out.println("  " + Math.round(nPuzzles / duration) + " puzzles per second");
+        System.out.println("  " + Workspace.LATENCIES.summary());
+        SolverStats stats = Workspace.STATS;
+        if (stats != null && stats.getSearches() > 0) {
+            double n = stats.getSearches();
+            System.out.println(String.format("  %d searches: %.1f nodes, %.1f guesses, %.1f dead ends per search;"
+                    + " max frontier %d, max depth %d", stats.getSearches(), stats.getNodes() / n,
+                    stats.getGuesses() / n, stats.getDeadEnds() / n, stats.getMaxFrontier(), stats.getMaxDepth()));
+            System.out.println(String.format("  placed %.1f singles, %.1f in rows, %.1f in columns and %.1f in"
+                    + " submatrices per search", stats.getPlacedBySingles() / n, stats.getPlacedInRows() / n,
+                    stats.getPlacedInCols() / n, stats.getPlacedInBoxes() / n));
+        }
+        long bytesPerPuzzle = Workspace.bytesPerPuzzle();
+        if (bytesPerPuzzle >= 0)
+            System.out.println("  " + bytesPerPuzzle + " bytes allocated per puzzle");
+        SolutionCache cache = Workspace.CACHE;
+        if (cache != null) {
+            long lookups = cache.getHits() + cache.getMisses();
+            System.out.println("  " + cache.getHits() + " of " + lookups + " puzzles answered from the cache");
+        }
+        SolutionStore store = Workspace.STORE;
+        if (store != null) {
+            long lookups = store.getHits() + store.getMisses();
+            System.out.println("  " + store.getHits() + " of " + lookups + " puzzles answered from the store");
+        }
 
         // verify results
         System.out.println("Verifying results");
         int[] counts = verify(solutions);
         int nWrong = counts[0];
         int nUnsolvable = counts[1];
-        if (nWrong > 0 || nUnsolvable > 0) {
+        int nOverBudget = counts[2];
+        if (nWrong > 0 || nUnsolvable > 0 || nOverBudget > 0) {
             System.out.println("  Produced " + nWrong + " incorrect solutions");
             System.out.println("  " + nUnsolvable + " inputs were unsolvable");
+            System.out.println("  " + nOverBudget + " inputs went over budget");
         } else {
             System.out.println("  All good");
         }
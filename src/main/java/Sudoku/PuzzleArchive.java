@@ -0,0 +1,480 @@
+package Sudoku;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact binary file of puzzles, or of puzzles with their solutions.
+ *
+ * Each board is packed into 41 bytes, four bits per space in row-major order with the first
+ * space in the high bits of the first byte, and 0 for an empty space. The file starts with a
+ * 32-byte header (all numbers are big-endian):
+ *   [0, 4)    magic "SDKA"
+ *   4         version, currently 1
+ *   5         kind: PUZZLES or RESULTS
+ *   [6, 8)    flags: HAS_INDEX
+ *   [8, 16)   the number of records
+ *   [16, 24)  the offset of the index, or 0 if there is none
+ *   [24, 32)  reserved, 0
+ * followed by the records. A PUZZLES record is just the packed puzzle, so puzzle i is found at
+ * 32 + 41 * i. A RESULTS record is the packed puzzle, a status byte (one of the STATUS_
+ * constants), the number of solutions as 4 bytes, and then each packed solution. RESULTS
+ * records vary in length, so the writer can add an index of the offset of each record (8 bytes
+ * each); without one, the records are scanned when the file is opened.
+ *
+ * An archive is a List of its puzzles, each a CharSequence read straight from the mapped file,
+ * so it can be solved in place of the lines of a PuzzleFile.
+ */
+public class PuzzleArchive extends AbstractList<CharSequence> {
+
+    public static final byte KIND_PUZZLES = 0;
+    public static final byte KIND_RESULTS = 1;
+
+    public static final int HAS_INDEX = 1;
+
+    public static final byte STATUS_SOLVED = 0;
+    public static final byte STATUS_UNSOLVABLE = 1;
+    public static final byte STATUS_OVER_BUDGET = 2;
+    public static final byte STATUS_INVALID = 3;
+
+    private static final byte[] MAGIC = {'S', 'D', 'K', 'A'};
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    public static final int BOARD_SIZE = 41;
+    private static final int RESULT_HEADER_SIZE = BOARD_SIZE + 1 + 4;
+
+    /* Each segment maps 1 << SEGMENT_BITS bytes of the file. Records may span two segments. */
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+    private final MappedByteBuffer[] segments;
+    private final byte kind;
+    private final int count;
+
+    /* The offset of each record, for RESULTS. PUZZLES records are found by their number. */
+    private final long[] offsets;
+
+    private PuzzleArchive(MappedByteBuffer[] segments, byte kind, int count, long[] offsets) {
+        this.segments = segments;
+        this.kind = kind;
+        this.count = count;
+        this.offsets = offsets;
+    }
+
+    /** True if the file at `path` starts like an archive, rather than a text file of puzzles **/
+    public static boolean isArchive(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            while (magic.hasRemaining() && channel.read(magic) >= 0)
+                ;
+            return !magic.hasRemaining() && Arrays.equals(magic.array(), MAGIC);
+        }
+    }
+
+    /** The puzzles in the file at `path`, whether it is an archive or a text file **/
+    public static List<CharSequence> openPuzzles(Path path) throws IOException {
+        if (isArchive(path))
+            return open(path);
+        return PuzzleFile.open(path);
+    }
+
+    /** Map the archive at `path` **/
+    public static PuzzleArchive open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+                throw new IOException(path + " is too short to be a puzzle archive");
+            int nSegments = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+            MappedByteBuffer[] segments = new MappedByteBuffer[nSegments];
+            for (int k = 0; k < nSegments; ++k) {
+                long start = (long) k << SEGMENT_BITS;
+                segments[k] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, SEGMENT_SIZE));
+            }
+            return read(segments, size);
+        }
+    }
+
+    /* Check the header, and find the records */
+    private static PuzzleArchive read(MappedByteBuffer[] segments, long size) throws IOException {
+        PuzzleArchive header = new PuzzleArchive(segments, KIND_PUZZLES, 0, null);
+        for (int k = 0; k < MAGIC.length; ++k) {
+            if (header.byteAt(k) != MAGIC[k])
+                throw new IOException("Not a puzzle archive");
+        }
+        if (header.byteAt(4) != VERSION)
+            throw new IOException("Unsupported puzzle archive version " + header.byteAt(4));
+        byte kind = header.byteAt(5);
+        int flags = header.shortAt(6);
+        long count = header.longAt(8);
+        long indexOffset = header.longAt(16);
+        if (count < 0 || count > Integer.MAX_VALUE)
+            throw new IOException("Bad record count " + count);
+
+        if (kind == KIND_PUZZLES) {
+            if (HEADER_SIZE + count * BOARD_SIZE > size)
+                throw new IOException("Puzzle archive is truncated");
+            return new PuzzleArchive(segments, kind, (int) count, null);
+        }
+        if (kind != KIND_RESULTS)
+            throw new IOException("Unknown puzzle archive kind " + kind);
+
+        // every record is checked here, so that reading one later can't run off the end of the file
+        long[] offsets = new long[(int) count];
+        if ((flags & HAS_INDEX) != 0) {
+            if (indexOffset < HEADER_SIZE || indexOffset > size - 8 * count)
+                throw new IOException("Bad puzzle archive index offset " + indexOffset);
+            for (int i = 0; i < count; ++i) {
+                offsets[i] = header.longAt(indexOffset + 8L * i);
+                header.resultEnd(offsets[i], size);
+            }
+        } else {
+            long p = HEADER_SIZE;
+            for (int i = 0; i < count; ++i) {
+                offsets[i] = p;
+                p = header.resultEnd(p, size);
+            }
+        }
+        return new PuzzleArchive(segments, kind, (int) count, offsets);
+    }
+
+    /* The end of the RESULTS record at p, after checking that all of it is in the file */
+    private long resultEnd(long p, long size) throws IOException {
+        if (p < HEADER_SIZE)
+            throw new IOException("Bad puzzle archive record offset " + p);
+        if (p > size - RESULT_HEADER_SIZE)
+            throw new IOException("Puzzle archive is truncated");
+        int nSolutions = this.intAt(p + BOARD_SIZE + 1);
+        if (nSolutions < 0)
+            throw new IOException("Bad solution count " + nSolutions + " at offset " + p);
+        long end = p + RESULT_HEADER_SIZE + (long) nSolutions * BOARD_SIZE;
+        if (end > size)
+            throw new IOException("Puzzle archive is truncated");
+        return end;
+    }
+
+    private byte byteAt(long p) {
+        return this.segments[(int) (p >>> SEGMENT_BITS)].get((int) (p & (SEGMENT_SIZE - 1)));
+    }
+
+    private int shortAt(long p) {
+        return (this.byteAt(p) & 0xFF) << 8 | this.byteAt(p + 1) & 0xFF;
+    }
+
+    private int intAt(long p) {
+        return this.shortAt(p) << 16 | this.shortAt(p + 2);
+    }
+
+    private long longAt(long p) {
+        return (long) this.intAt(p) << 32 | this.intAt(p + 4) & 0xFFFFFFFFL;
+    }
+
+    public byte getKind() {
+        return this.kind;
+    }
+
+    /** The number of records, which is the number of puzzles **/
+    @Override
+    public int size() {
+        return this.count;
+    }
+
+    private long offset(int i) {
+        if (i < 0 || i >= this.count)
+            throw new IndexOutOfBoundsException("record " + i + ", size " + this.count);
+        return this.offsets == null ? HEADER_SIZE + (long) i * BOARD_SIZE : this.offsets[i];
+    }
+
+    /** The i-th puzzle, as 81 characters read from the mapped file each time it is used **/
+    @Override
+    public CharSequence get(int i) {
+        return new Cells(this, this.offset(i), 0, 81);
+    }
+
+    /** The status of the i-th result: one of the STATUS_ constants **/
+    public byte getStatus(int i) {
+        if (this.kind != KIND_RESULTS)
+            throw new IllegalStateException("An archive of puzzles has no results");
+        return this.byteAt(this.offset(i) + BOARD_SIZE);
+    }
+
+    /**
+     * The solutions to the i-th puzzle, in the form the solvers return them: null if it had none,
+     * Budget.EXCEEDED if the search went over budget, and an empty array if it couldn't be read.
+     */
+    public SudokuBoard[] getSolutions(int i) throws SudokuBoard.SudokuException {
+        byte status = this.getStatus(i);
+        if (status == STATUS_UNSOLVABLE)
+            return null;
+        if (status == STATUS_OVER_BUDGET)
+            return Budget.EXCEEDED;
+        long p = this.offset(i) + BOARD_SIZE + 1;
+        SudokuBoard[] solutions = new SudokuBoard[this.intAt(p)];
+        p += 4;
+        for (int k = 0; k < solutions.length; ++k) {
+            solutions[k] = new SudokuBoard();
+            solutions[k].load(new Cells(this, p, 0, 81));
+            p += BOARD_SIZE;
+        }
+        return solutions;
+    }
+
+    /* A view of one packed board, as its 81 characters, '1'-'9' or '.' for an empty space */
+    private static class Cells implements CharSequence {
+        private final PuzzleArchive archive;
+        private final long offset;
+        private final int start;
+        private final int length;
+
+        Cells(PuzzleArchive archive, long offset, int start, int length) {
+            this.archive = archive;
+            this.offset = offset;
+            this.start = start;
+            this.length = length;
+        }
+
+        public int length() {
+            return this.length;
+        }
+
+        public char charAt(int index) {
+            if (index < 0 || index >= this.length)
+                throw new IndexOutOfBoundsException("index " + index + ", length " + this.length);
+            int c = this.start + index;
+            int packed = this.archive.byteAt(this.offset + (c >> 1));
+            int n = (c & 1) == 0 ? (packed >> 4) & 0xF : packed & 0xF;
+            return n == 0 ? '.' : (char) ('0' + n);
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > this.length || start > end)
+                throw new IndexOutOfBoundsException("[" + start + ", " + end + "), length " + this.length);
+            return new Cells(this.archive, this.offset, this.start + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[this.length];
+            for (int i = 0; i < this.length; ++i)
+                chars[i] = this.charAt(i);
+            return new String(chars);
+        }
+    }
+
+    /* Pack the 81 spaces of s (any character but 1-9 is empty) into 41 bytes of `out` */
+    static void pack(CharSequence s, ByteBuffer out) throws SudokuBoard.SudokuException {
+        if (s.length() < 81)
+            throw new SudokuBoard.SudokuException("Not enough characters in string to construct a board.");
+        for (int c = 0; c < 82; c += 2) {
+            int high = digit(s.charAt(c));
+            int low = c + 1 < 81 ? digit(s.charAt(c + 1)) : 0;
+            out.put((byte) (high << 4 | low));
+        }
+    }
+
+    private static int digit(char c) {
+        return '1' <= c && c <= '9' ? c - '0' : 0;
+    }
+
+    static void pack(SudokuBoard board, ByteBuffer out) {
+        for (int c = 0; c < 82; c += 2) {
+            int high = entry(board, c);
+            int low = c + 1 < 81 ? entry(board, c + 1) : 0;
+            out.put((byte) (high << 4 | low));
+        }
+    }
+
+    private static int entry(SudokuBoard board, int c) {
+        int n = board.entries[c / 9][c % 9];
+        return n > SudokuBoard.EMPTY_ENTRY ? n : 0;
+    }
+
+    /* The board packed into the 41 bytes of `in` starting at its position */
+    static SudokuBoard unpack(ByteBuffer in) {
+        int[][] entries = new int[9][9];
+        for (int c = 0; c < 82; c += 2) {
+            int packed = in.get();
+            entries[c / 9][c % 9] = (packed >> 4) & 0xF;
+            if (c + 1 < 81)
+                entries[(c + 1) / 9][(c + 1) % 9] = packed & 0xF;
+        }
+        return new SudokuBoard(entries);
+    }
+
+    /**
+     * Writes an archive of one kind, through a buffer. The header (and the index, if any) is
+     * written when the writer is closed, so an archive that wasn't closed can't be read.
+     */
+    public static class Writer implements Closeable {
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private final FileChannel channel;
+        private final byte kind;
+        private final boolean withIndex;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long position = HEADER_SIZE;
+        private long[] offsets = new long[1024];
+        private int count = 0;
+
+        /** Create (or replace) the archive at `path`, indexing its records if `withIndex` is true **/
+        public Writer(Path path, byte kind, boolean withIndex) throws IOException {
+            if (kind != KIND_PUZZLES && kind != KIND_RESULTS)
+                throw new IllegalArgumentException("Unknown puzzle archive kind " + kind);
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            // the header is written last, once the count is known
+            this.channel.position(HEADER_SIZE);
+            this.kind = kind;
+            // PUZZLES records are all the same size, so they never need an index
+            this.withIndex = withIndex && kind == KIND_RESULTS;
+        }
+
+        public int getCount() {
+            return this.count;
+        }
+
+        /** Add a puzzle to an archive of PUZZLES **/
+        public void addPuzzle(CharSequence puzzle) throws IOException, SudokuBoard.SudokuException {
+            if (this.kind != KIND_PUZZLES)
+                throw new IllegalStateException("Results need their solutions");
+            this.reserve(BOARD_SIZE);
+            pack(puzzle, this.buffer);
+            this.added(BOARD_SIZE);
+        }
+
+        /**
+         * Add a puzzle and the solutions a solver returned for it to an archive of RESULTS.
+         * A puzzle that can't be read is kept with the status STATUS_INVALID and no solutions.
+         */
+        public void addResult(CharSequence puzzle, SudokuBoard[] solutions) throws IOException {
+            if (this.kind != KIND_RESULTS)
+                throw new IllegalStateException("An archive of puzzles has no results");
+            byte status = solutions == null ? STATUS_UNSOLVABLE
+                    : solutions == Budget.EXCEEDED ? STATUS_OVER_BUDGET
+                    : STATUS_SOLVED;
+            int nSolutions = status == STATUS_SOLVED ? solutions.length : 0;
+            this.reserve(RESULT_HEADER_SIZE);
+            int start = this.buffer.position();
+            try {
+                pack(puzzle, this.buffer);
+            } catch (SudokuBoard.SudokuException e) {
+                this.buffer.position(start);
+                this.buffer.put(new byte[BOARD_SIZE]);
+                status = STATUS_INVALID;
+                nSolutions = 0;
+            }
+            this.buffer.put(status);
+            this.buffer.putInt(nSolutions);
+            for (int k = 0; k < nSolutions; ++k) {
+                this.reserve(BOARD_SIZE);
+                pack(solutions[k], this.buffer);
+            }
+            this.added(RESULT_HEADER_SIZE + (long) nSolutions * BOARD_SIZE);
+        }
+
+        /* Make room in the buffer for `n` more bytes */
+        private void reserve(int n) throws IOException {
+            if (this.buffer.remaining() < n)
+                this.flush();
+        }
+
+        private void flush() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining())
+                this.channel.write(this.buffer);
+            this.buffer.clear();
+        }
+
+        /* Record a record of `length` bytes that has just been buffered */
+        private void added(long length) {
+            if (this.withIndex) {
+                if (this.count == this.offsets.length)
+                    this.offsets = Arrays.copyOf(this.offsets, 2 * this.count);
+                this.offsets[this.count] = this.position;
+            }
+            this.position += length;
+            this.count++;
+        }
+
+        /** Write the index and the header, and close the file **/
+        @Override
+        public void close() throws IOException {
+            try {
+                long indexOffset = 0;
+                if (this.withIndex) {
+                    indexOffset = this.position;
+                    for (int i = 0; i < this.count; ++i) {
+                        this.reserve(8);
+                        this.buffer.putLong(this.offsets[i]);
+                    }
+                }
+                this.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.put(MAGIC);
+                header.put(VERSION);
+                header.put(this.kind);
+                header.putShort((short) (this.withIndex ? HAS_INDEX : 0));
+                header.putLong(this.count);
+                header.putLong(indexOffset);
+                header.flip();
+                long p = 0;
+                while (header.hasRemaining())
+                    p += this.channel.write(header, p);
+            } finally {
+                this.channel.close();
+            }
+        }
+    }
+
+    /** Write each puzzle and its solutions to an archive of RESULTS at `path`, with an index **/
+    public static void writeResults(Path path, List<? extends CharSequence> inputs, SudokuBoard[][] outputs)
+            throws IOException {
+        assert(inputs.size() == outputs.length);
+        try (Writer writer = new Writer(path, KIND_RESULTS, true)) {
+            for (int i = 0; i < outputs.length; ++i)
+                writer.addResult(inputs.get(i), outputs[i]);
+        }
+    }
+
+    /**
+     * Convert between text and archives: `PuzzleArchive in out` packs the puzzles of the text
+     * file `in` into an archive of PUZZLES, and `PuzzleArchive in` prints the puzzles of the
+     * archive (of either kind) `in`, one per line.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args.length > 2) {
+            System.out.println("Usage: PuzzleArchive <puzzles.txt> <puzzles.sdka>   pack a text file");
+            System.out.println("       PuzzleArchive <puzzles.sdka>                 print an archive's puzzles");
+            return;
+        }
+        if (args.length == 1) {
+            PuzzleArchive archive = open(Paths.get(args[0]));
+            PrintStream out = new PrintStream(System.out, false);
+            for (CharSequence puzzle: archive)
+                out.println(puzzle);
+            out.flush();
+            return;
+        }
+        PuzzleFile puzzles = PuzzleFile.open(Paths.get(args[0]));
+        try (Writer writer = new Writer(Paths.get(args[1]), KIND_PUZZLES, false)) {
+            for (int i = 0; i < puzzles.size(); ++i) {
+                try {
+                    writer.addPuzzle(puzzles.get(i));
+                } catch (SudokuBoard.SudokuException e) {
+                    System.out.println("Skipping puzzle " + (i + 1) + ": " + e.getMessage());
+                }
+            }
+            System.out.println("Packed " + writer.getCount() + " puzzles");
+        }
+    }
+}
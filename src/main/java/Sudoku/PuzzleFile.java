@@ -0,0 +1,215 @@
+package Sudoku;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A file of puzzles, one per line, read through a memory mapping instead of a Reader.
+ *
+ * Opening the file scans it for line breaks, splitting it into ranges that are scanned in
+ * parallel, and keeps only the offset and length of each non-empty line. Each puzzle is then
+ * a CharSequence that reads straight from the mapped file, so no line is ever copied into a
+ * String and the puzzle text never has to fit on the heap. Boards can load() these directly.
+ *
+ * Files larger than a single mapping can hold are mapped in overlapping segments, so that
+ * every line lies entirely within the segment its first byte falls in.
+ */
+public class PuzzleFile extends AbstractList<CharSequence> {
+
+    /* Segment k maps [k << SEGMENT_BITS, (k + 1) << SEGMENT_BITS) plus MAX_LINE more bytes */
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final int MAX_LINE = 1 << 16;
+
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    /* The start (within the file) and length of each puzzle's line, with whitespace trimmed */
+    private final long[] starts;
+    private final int[] lengths;
+
+    private PuzzleFile(MappedByteBuffer[] segments, long size, long[] starts, int[] lengths) {
+        this.segments = segments;
+        this.size = size;
+        this.starts = starts;
+        this.lengths = lengths;
+    }
+
+    /** Map the file at `path` and find its puzzles, scanning with one thread per processor **/
+    public static PuzzleFile open(Path path) throws IOException {
+        return open(path, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Map the file at `path` and find its puzzles, scanning `nThreads` ranges of it at once **/
+    public static PuzzleFile open(Path path, int nThreads) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int nSegments = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+            MappedByteBuffer[] segments = new MappedByteBuffer[nSegments];
+            for (int k = 0; k < nSegments; ++k) {
+                long start = (long) k << SEGMENT_BITS;
+                long length = Math.min(size - start, SEGMENT_SIZE + MAX_LINE);
+                segments[k] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+            // the mapping stays valid after the channel is closed
+            PuzzleFile file = new PuzzleFile(segments, size, null, null);
+            return file.scan(Math.max(1, nThreads));
+        }
+    }
+
+    /* Find the lines of this file, each range of it on its own thread */
+    private PuzzleFile scan(int nThreads) throws IOException {
+        int nRanges = (int) Math.max(1, Math.min(nThreads, this.size / MAX_LINE));
+        ExecutorService pool = Executors.newFixedThreadPool(nRanges);
+        try {
+            List<Future<Lines>> ranges = new ArrayList<Future<Lines>>(nRanges);
+            for (int r = 0; r < nRanges; ++r) {
+                final long from = this.size * r / nRanges;
+                final long to = this.size * (r + 1) / nRanges;
+                ranges.add(pool.submit(new Callable<Lines>() {
+                    public Lines call() throws IOException {
+                        return PuzzleFile.this.findLines(from, to);
+                    }
+                }));
+            }
+            int total = 0;
+            List<Lines> found = new ArrayList<Lines>(nRanges);
+            for (Future<Lines> range: ranges) {
+                Lines lines = range.get();
+                found.add(lines);
+                total += lines.count;
+            }
+            long[] starts = new long[total];
+            int[] lengths = new int[total];
+            int n = 0;
+            for (Lines lines: found) {
+                System.arraycopy(lines.starts, 0, starts, n, lines.count);
+                System.arraycopy(lines.lengths, 0, lengths, n, lines.count);
+                n += lines.count;
+            }
+            return new PuzzleFile(this.segments, this.size, starts, lengths);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scanning for puzzles", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /* The lines found in one range of the file */
+    private static class Lines {
+        long[] starts = new long[1024];
+        int[] lengths = new int[1024];
+        int count = 0;
+
+        void add(long start, int length) {
+            if (this.count == this.starts.length) {
+                this.starts = Arrays.copyOf(this.starts, 2 * this.count);
+                this.lengths = Arrays.copyOf(this.lengths, 2 * this.count);
+            }
+            this.starts[this.count] = start;
+            this.lengths[this.count] = length;
+            this.count++;
+        }
+    }
+
+    /* The non-empty lines that start in [from, to), which may end after `to` */
+    private Lines findLines(long from, long to) throws IOException {
+        Lines lines = new Lines();
+        long p = from;
+        // a line that starts before this range belongs to the range before
+        if (p > 0) {
+            while (p < to && this.byteAt(p - 1) != '\n')
+                p++;
+        }
+        while (p < to) {
+            long end = p;
+            while (end < this.size && this.byteAt(end) != '\n')
+                end++;
+            // trim whitespace (including the '\r' of a "\r\n") from both ends, as String.trim() would
+            long first = p, last = end;
+            while (first < last && this.byteAt(first) <= ' ')
+                first++;
+            while (last > first && this.byteAt(last - 1) <= ' ')
+                last--;
+            if (last > first) {
+                if (end - p > MAX_LINE)
+                    throw new IOException("Line at byte " + p + " is longer than " + MAX_LINE + " bytes");
+                lines.add(first, (int) (last - first));
+            }
+            p = end + 1;
+        }
+        return lines;
+    }
+
+    private byte byteAt(long p) {
+        return this.segments[(int) (p >>> SEGMENT_BITS)].get((int) (p & (SEGMENT_SIZE - 1)));
+    }
+
+    /** The number of puzzles in the file **/
+    @Override
+    public int size() {
+        return this.starts.length;
+    }
+
+    /** The i-th puzzle, read from the mapped file each time it is used **/
+    @Override
+    public CharSequence get(int i) {
+        long start = this.starts[i];
+        MappedByteBuffer segment = this.segments[(int) (start >>> SEGMENT_BITS)];
+        return new Line(segment, (int) (start & (SEGMENT_SIZE - 1)), this.lengths[i]);
+    }
+
+    /* A view of one line of the file. The file is read as single-byte characters. */
+    private static class Line implements CharSequence {
+        private final MappedByteBuffer segment;
+        private final int offset;
+        private final int length;
+
+        Line(MappedByteBuffer segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public int length() {
+            return this.length;
+        }
+
+        public char charAt(int index) {
+            if (index < 0 || index >= this.length)
+                throw new IndexOutOfBoundsException("index " + index + ", length " + this.length);
+            return (char) (this.segment.get(this.offset + index) & 0xFF);
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > this.length || start > end)
+                throw new IndexOutOfBoundsException("[" + start + ", " + end + "), length " + this.length);
+            return new Line(this.segment, this.offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[this.length];
+            for (int i = 0; i < this.length; ++i)
+                chars[i] = this.charAt(i);
+            return new String(chars);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package Sudoku;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes results in a machine-readable form, one line per puzzle:
+ *
+ *   input TAB status TAB count [TAB solution]...
+ *
+ * where the status is one of "solved", "unsolvable", "over-budget", "invalid" (the input
+ * couldn't be read) or "failed" (the solver threw an exception), the count is the number of
+ * solutions, and each solution is its 81 digits.
+ * An input given as a board is written the same way, with '.' for an empty space.
+ *
+ * Each line is encoded straight from the boards' entries into one large byte buffer, which is
+ * only handed to the stream when it fills up (or is flushed), so there are no Strings or
+ * formatting on the way and the stream sees a few large writes. A writer is not thread-safe.
+ */
+public class ResultWriter implements Closeable, Flushable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private static final byte[] SOLVED = bytes("solved");
+    private static final byte[] UNSOLVABLE = bytes("unsolvable");
+    private static final byte[] OVER_BUDGET = bytes("over-budget");
+    private static final byte[] INVALID = bytes("invalid");
+    private static final byte[] FAILED = bytes("failed");
+
+    // Room for a board, the status, the count and the separators, written without checking again
+    private static final int LINE_HEAD = 81 + 1 + 11 + 1 + 10 + 1;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int position = 0;
+
+    public ResultWriter(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ResultWriter(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buffer = new byte[Math.max(bufferSize, 2 * LINE_HEAD)];
+    }
+
+    private static byte[] bytes(String s) {
+        byte[] b = new byte[s.length()];
+        for (int i = 0; i < b.length; ++i)
+            b[i] = (byte) s.charAt(i);
+        return b;
+    }
+
+    /**
+     * Write a line for a puzzle, given as text, and the solutions a solver returned for it.
+     * Text too short to be a puzzle is written as invalid.
+     */
+    public void write(CharSequence input, SudokuBoard[] solutions) throws IOException {
+        if (input.length() < 81) {
+            this.writeInvalid(input);
+            return;
+        }
+        this.putText(input);
+        this.putResult(solutions);
+    }
+
+    /** Write a line for a puzzle, given as a board, and the solutions a solver returned for it **/
+    public void write(SudokuBoard input, SudokuBoard[] solutions) throws IOException {
+        this.reserve(LINE_HEAD);
+        this.putBoard(input);
+        this.putResult(solutions);
+    }
+
+    /** Write a line for a puzzle that couldn't be read **/
+    public void writeInvalid(CharSequence input) throws IOException {
+        this.putText(input);
+        this.putStatus(INVALID);
+    }
+
+    /** Write a line for a puzzle the solver failed on **/
+    public void writeFailed(SudokuBoard input) throws IOException {
+        this.reserve(LINE_HEAD);
+        this.putBoard(input);
+        this.putStatus(FAILED);
+    }
+
+    /* A status with no solutions, after the input */
+    private void putStatus(byte[] status) throws IOException {
+        this.reserve(LINE_HEAD);
+        this.put((byte) '\t');
+        this.put(status);
+        this.put((byte) '\t');
+        this.put((byte) '0');
+        this.put((byte) '\n');
+    }
+
+    /* The status, count and solutions, after the input */
+    private void putResult(SudokuBoard[] solutions) throws IOException {
+        byte[] status = solutions == null ? UNSOLVABLE
+                : solutions == Budget.EXCEEDED ? OVER_BUDGET
+                : SOLVED;
+        int count = status == SOLVED ? solutions.length : 0;
+        this.reserve(LINE_HEAD);
+        this.put((byte) '\t');
+        this.put(status);
+        this.put((byte) '\t');
+        this.putInt(count);
+        for (int k = 0; k < count; ++k) {
+            this.reserve(1 + 81 + 1);
+            this.put((byte) '\t');
+            this.putBoard(solutions[k]);
+        }
+        this.put((byte) '\n');
+    }
+
+    /* The characters of s, which may be longer than the buffer. Tabs and line breaks become spaces. */
+    private void putText(CharSequence s) throws IOException {
+        int n = s.length();
+        for (int i = 0; i < n; ++i) {
+            if (this.position == this.buffer.length)
+                this.flushBuffer();
+            char c = s.charAt(i);
+            this.buffer[this.position++] = c == '\t' || c == '\n' || c == '\r' ? (byte) ' '
+                    : c < 0x80 ? (byte) c : (byte) '?';
+        }
+    }
+
+    /* The 81 entries of a board, which must fit in the buffer */
+    private void putBoard(SudokuBoard board) {
+        byte[] buffer = this.buffer;
+        int p = this.position;
+        for (int i = 0; i < 9; ++i) {
+            int[] row = board.entries[i];
+            for (int j = 0; j < 9; ++j) {
+                int n = row[j];
+                buffer[p++] = n > SudokuBoard.EMPTY_ENTRY ? (byte) ('0' + n) : (byte) '.';
+            }
+        }
+        this.position = p;
+    }
+
+    private void putInt(int n) {
+        if (n >= 10)
+            this.putInt(n / 10);
+        this.buffer[this.position++] = (byte) ('0' + n % 10);
+    }
+
+    private void put(byte b) {
+        this.buffer[this.position++] = b;
+    }
+
+    private void put(byte[] b) {
+        System.arraycopy(b, 0, this.buffer, this.position, b.length);
+        this.position += b.length;
+    }
+
+    /* Make room in the buffer for `n` more bytes */
+    private void reserve(int n) throws IOException {
+        if (this.buffer.length - this.position < n)
+            this.flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (this.position > 0)
+            this.out.write(this.buffer, 0, this.position);
+        this.position = 0;
+    }
+
+    /** Write out the buffered lines **/
+    @Override
+    public void flush() throws IOException {
+        this.flushBuffer();
+        this.out.flush();
+    }
+
+    /** Write out the buffered lines and close the stream **/
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flushBuffer();
+        } finally {
+            this.out.close();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package Sudoku;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the solutions of the puzzles solved most recently, by their canonical form, so that
+ * a puzzle that is a transform of one already solved (relabeled, reordered, transposed) is
+ * answered by carrying the cached solutions back through its own transform.
+ *
+ * The solutions are kept in canonical form. When full, the least recently used puzzle is
+ * dropped. All methods are synchronized, so one cache can be shared by all threads.
+ *
+ * A puzzle with more than one solution may be answered with different solutions than solving
+ * it would give (though as many, and all valid), since they were found for another transform.
+ */
+public class SolutionCache {
+
+    /**
+     * The result of a lookup that missed, in place of solutions. Compare by identity: it is an
+     * empty array, so it is not null (a cached "no solutions").
+     */
+    public static final SudokuBoard[] MISS = new SudokuBoard[0];
+
+    private final LinkedHashMap<CanonicalForm, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /* Solutions in canonical form (null if there were none), and whether they are all there are */
+    private static class Entry {
+        final byte[][] solutions;
+        final boolean all;
+
+        Entry(byte[][] solutions, boolean all) {
+            this.solutions = solutions;
+            this.all = all;
+        }
+    }
+
+    /** A cache that holds the solutions of at most `capacity` puzzles **/
+    public SolutionCache(final int capacity) {
+        this.entries = new LinkedHashMap<CanonicalForm, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CanonicalForm, Entry> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * The solutions to the puzzle with this canonical form, in the form solve() returns them
+     * (null if there are none), or MISS if they aren't cached. When findAll is true, only
+     * solutions that were cached from a search for all of them will do.
+     */
+    public SudokuBoard[] get(CanonicalForm form, boolean findAll) {
+        Entry entry;
+        synchronized (this) {
+            entry = this.entries.get(form);
+        }
+        if (entry == null || (findAll && !entry.all)) {
+            this.misses.increment();
+            return MISS;
+        }
+        this.hits.increment();
+        if (entry.solutions == null)
+            return null;
+        int n = findAll ? entry.solutions.length : 1;
+        SudokuBoard[] solutions = new SudokuBoard[n];
+        for (int k = 0; k < n; ++k)
+            solutions[k] = form.fromCanonical(entry.solutions[k]);
+        return solutions;
+    }
+
+    /**
+     * Cache the solutions to the puzzle with this canonical form, as solve() returned them.
+     * Results over budget aren't cached, and neither are the first solutions of a puzzle whose
+     * solutions are all cached already.
+     */
+    public void put(CanonicalForm form, boolean findAll, SudokuBoard[] solutions) {
+        if (solutions == Budget.EXCEEDED)
+            return;
+        byte[][] canonical = null;
+        if (solutions != null) {
+            canonical = new byte[solutions.length][];
+            for (int k = 0; k < solutions.length; ++k)
+                canonical[k] = form.toCanonical(solutions[k]);
+        }
+        // a puzzle with no solutions has all of them cached, whichever search found that out
+        Entry entry = new Entry(canonical, findAll || solutions == null);
+        synchronized (this) {
+            Entry old = this.entries.get(form);
+            if (old == null || !old.all || entry.all)
+                this.entries.put(form, entry);
+        }
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+        this.hits.reset();
+        this.misses.reset();
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+}
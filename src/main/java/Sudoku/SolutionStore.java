@@ -0,0 +1,503 @@
+package Sudoku;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Solutions kept on disk from one run to the next, keyed by the puzzle itself.
+ *
+ * A store at `base` is two files. base.dat is an append-only log of records: each one is the
+ * puzzle packed as in a PuzzleArchive (41 bytes), a byte of flags (the PuzzleArchive status in
+ * the low bits, and ALL when the solutions are all there are), the number of solutions as 4
+ * bytes, and each packed solution. base.idx is an open-addressing hash table, memory-mapped,
+ * of slots holding a puzzle's 64-bit fingerprint and the offset of its latest record.
+ *
+ * Lookups take no locks: a writer appends the record first and then publishes its offset into
+ * the slot with a release store, and readers load the offset with an acquire load, so a
+ * record is always complete by the time a reader can find it. The fingerprint only picks the
+ * slot; the packed puzzle in the record is compared before its solutions are used. Writers
+ * take the store's lock. When the table gets too full, a table twice the size is built in a
+ * new file, which replaces the old one; readers still using the old table find a little less.
+ *
+ * Lookups read records through a read-only mapping of the log, so a hit is read without a
+ * system call or a copy. The mapping is extended as the log grows, once every REMAP_BYTES;
+ * the records appended since are read from the file.
+ *
+ * If the index doesn't cover the whole log when the store is opened (say the writing process
+ * died), it is rebuilt from the log, after cutting off a record that was only half written.
+ * The log is locked while the store is open, so only one process can have it open at a time.
+ */
+public class SolutionStore implements Closeable {
+
+    private static final byte[] DATA_MAGIC = {'S', 'D', 'K', 'S'};
+    private static final byte[] INDEX_MAGIC = {'S', 'D', 'K', 'I'};
+    private static final int VERSION = 1;
+    private static final int DATA_HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = PuzzleArchive.BOARD_SIZE + 1 + 4;
+
+    // Flag on a record whose solutions are all there are (up to SudokuSolver.MAX_SOLNS)
+    private static final int ALL = 0x80;
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    // The log is mapped again once this much has been appended past the end of its mapping
+    private static final long REMAP_BYTES = 1 << 20;
+
+    private final Path indexPath;
+    private final FileChannel data;
+    private long dataEnd;
+    private volatile Index index;
+    private volatile View view;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private SolutionStore(Path indexPath, FileChannel data) {
+        this.indexPath = indexPath;
+        this.data = data;
+    }
+
+    /** Open the store at `base` (base.dat and base.idx), creating it if there isn't one **/
+    public static SolutionStore open(Path base) throws IOException {
+        Path dataPath = base.resolveSibling(base.getFileName() + ".dat");
+        Path indexPath = base.resolveSibling(base.getFileName() + ".idx");
+        FileChannel data = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        SolutionStore store = new SolutionStore(indexPath, data);
+        try {
+            // held until the channel is closed
+            FileLock lock;
+            try {
+                lock = data.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null)
+                throw new IOException("Solution store " + base + " is already open, in this or another process");
+            store.load();
+        } catch (IOException e) {
+            data.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /* Check the log, and map the index, rebuilding it if it doesn't match the log */
+    private void load() throws IOException {
+        long size = this.data.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_SIZE);
+            header.put(DATA_MAGIC).putInt(VERSION);
+            header.clear();
+            writeFully(this.data, header, 0);
+            size = DATA_HEADER_SIZE;
+        } else {
+            ByteBuffer header = readFully(this.data, 0, DATA_HEADER_SIZE);
+            byte[] magic = new byte[4];
+            header.get(magic);
+            if (!Arrays.equals(magic, DATA_MAGIC) || header.getInt() != VERSION)
+                throw new IOException("Not a solution store: " + this.indexPath);
+        }
+        this.dataEnd = size;
+
+        if (Files.exists(this.indexPath)) {
+            Index index = Index.open(this.indexPath);
+            if (index != null && index.getDataEnd() == size) {
+                this.index = index;
+                this.view = View.map(this.data, size, null);
+                return;
+            }
+        }
+        this.rebuild();
+        this.view = View.map(this.data, this.dataEnd, null);
+    }
+
+    /*
+     * Index every record in the log, cutting off any record at the end that is incomplete. A
+     * record whose header doesn't make sense is corruption rather than an interrupted write,
+     * so it fails the open and nothing is cut off.
+     */
+    private void rebuild() throws IOException {
+        Index index = Index.create(this.indexPath, INITIAL_CAPACITY);
+        long p = DATA_HEADER_SIZE;
+        long size = this.data.size();
+        while (p + RECORD_HEADER_SIZE <= size) {
+            ByteBuffer header = readFully(this.data, p, RECORD_HEADER_SIZE);
+            int status = (header.get(PuzzleArchive.BOARD_SIZE) & 0xFF) & ~ALL;
+            if (status != PuzzleArchive.STATUS_SOLVED && status != PuzzleArchive.STATUS_UNSOLVABLE)
+                throw new IOException("Bad status " + status + " in solution store record at offset " + p);
+            int nSolutions = header.getInt(PuzzleArchive.BOARD_SIZE + 1);
+            if (nSolutions < 0 || nSolutions > SudokuSolver.MAX_SOLNS)
+                throw new IOException("Bad solution count " + nSolutions + " at offset " + p);
+            long length = RECORD_HEADER_SIZE + (long) nSolutions * PuzzleArchive.BOARD_SIZE;
+            if (p + length > size)
+                break;
+            byte[] key = new byte[PuzzleArchive.BOARD_SIZE];
+            header.get(0, key);
+            if (index.isTooFull())
+                index = index.grow(this.indexPath);
+            index.put(key, p, fingerprint(key), this);
+            p += length;
+        }
+        if (p < size)
+            this.data.truncate(p);
+        this.dataEnd = p;
+        index.setDataEnd(p);
+        this.index = index;
+    }
+
+    /** The key a puzzle is stored under: the puzzle, packed. Null if s is too short to be a puzzle. **/
+    public static byte[] key(CharSequence s) {
+        ByteBuffer key = ByteBuffer.allocate(PuzzleArchive.BOARD_SIZE);
+        try {
+            PuzzleArchive.pack(s, key);
+        } catch (SudokuBoard.SudokuException e) {
+            return null;
+        }
+        return key.array();
+    }
+
+    /** Same as above, for a puzzle on a board **/
+    public static byte[] key(SudokuBoard board) {
+        ByteBuffer key = ByteBuffer.allocate(PuzzleArchive.BOARD_SIZE);
+        PuzzleArchive.pack(board, key);
+        return key.array();
+    }
+
+    /** The 64-bit fingerprint of a key **/
+    public static long fingerprint(byte[] key) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b: key)
+            h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * The solutions stored for the puzzle with this key, in the form solve() returns them (null
+     * if there are none), or SolutionCache.MISS if there are none stored. When findAll is true,
+     * only solutions stored from a search for all of them will do. This takes no locks.
+     */
+    public SudokuBoard[] get(byte[] key, boolean findAll) {
+        long offset = this.index.get(key, fingerprint(key), this);
+        if (offset == 0) {
+            this.misses.increment();
+            return SolutionCache.MISS;
+        }
+        try {
+            ByteBuffer header = this.read(offset, RECORD_HEADER_SIZE);
+            int flags = header.get(PuzzleArchive.BOARD_SIZE) & 0xFF;
+            if (findAll && (flags & ALL) == 0) {
+                this.misses.increment();
+                return SolutionCache.MISS;
+            }
+            this.hits.increment();
+            if ((flags & ~ALL) == PuzzleArchive.STATUS_UNSOLVABLE)
+                return null;
+            int n = header.getInt(PuzzleArchive.BOARD_SIZE + 1);
+            if (!findAll)
+                n = Math.min(n, 1);
+            ByteBuffer packed = this.read(offset + RECORD_HEADER_SIZE, n * PuzzleArchive.BOARD_SIZE);
+            SudokuBoard[] solutions = new SudokuBoard[n];
+            for (int k = 0; k < n; ++k)
+                solutions[k] = PuzzleArchive.unpack(packed);
+            return solutions;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Store the solutions to the puzzle with this key, as solve() returned them. Results over
+     * budget aren't stored, and nothing is stored if the store already has as much.
+     */
+    public synchronized void put(byte[] key, boolean findAll, SudokuBoard[] solutions) {
+        if (solutions == Budget.EXCEEDED)
+            return;
+        boolean all = findAll || solutions == null;
+        long fingerprint = fingerprint(key);
+        try {
+            long old = this.index.get(key, fingerprint, this);
+            if (old != 0 && (!all || (this.read(old + PuzzleArchive.BOARD_SIZE, 1).get(0) & ALL) != 0))
+                return;
+
+            int n = solutions == null ? 0 : solutions.length;
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + n * PuzzleArchive.BOARD_SIZE);
+            record.put(key);
+            int status = solutions == null ? PuzzleArchive.STATUS_UNSOLVABLE : PuzzleArchive.STATUS_SOLVED;
+            record.put((byte) (status | (all ? ALL : 0)));
+            record.putInt(n);
+            for (int k = 0; k < n; ++k)
+                PuzzleArchive.pack(solutions[k], record);
+            record.flip();
+            long offset = this.dataEnd;
+            writeFully(this.data, record, offset);
+            this.dataEnd += record.capacity();
+
+            // the record is complete before it can be found
+            Index index = this.index;
+            if (index.isTooFull()) {
+                index = index.grow(this.indexPath);
+                this.index = index;
+            }
+            index.put(key, offset, fingerprint, this);
+            index.setDataEnd(this.dataEnd);
+            if (this.dataEnd - this.view.end >= REMAP_BYTES)
+                this.view = View.map(this.data, this.dataEnd, this.view);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** The number of puzzles stored **/
+    public int size() {
+        return this.index.getCount();
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    public void resetCounts() {
+        this.hits.reset();
+        this.misses.reset();
+    }
+
+    /** Write the index and the log out to disk, and close them **/
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            this.data.force(true);
+            this.index.force();
+        } finally {
+            this.data.close();
+        }
+    }
+
+    /* `length` bytes of the log from `position`: from the mapping if it has them, else from the file */
+    private ByteBuffer read(long position, int length) throws IOException {
+        // there is no mapping yet while the index is being rebuilt
+        View view = this.view;
+        ByteBuffer buffer = view != null ? view.slice(position, length) : null;
+        return buffer != null ? buffer : readFully(this.data, position, length);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Solution store ends in the middle of a record");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    /**
+     * The hash table, in a mapped file: a 64-byte header (magic, version, the number of slots,
+     * the number of puzzles, and the length of the log it covers), then 16-byte slots holding a
+     * fingerprint and a record's offset, with offset 0 for an empty slot. Slots are probed
+     * linearly from the fingerprint, and the table grows once it is more than half full.
+     */
+    private static class Index {
+        private static final int HEADER_SIZE = 64;
+        private static final int SLOT_SIZE = 16;
+        private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+        private final MappedByteBuffer map;
+        private final int capacity;
+        private int count;
+
+        private Index(MappedByteBuffer map, int capacity, int count) {
+            this.map = map;
+            this.capacity = capacity;
+            this.count = count;
+        }
+
+        /* An empty table of `capacity` slots (a power of two), replacing any file at `path` */
+        static Index create(Path path, int capacity) throws IOException {
+            long size = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("Solution store index can't grow past " + capacity / 2 + " puzzles");
+            Files.deleteIfExists(path);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                map.put(INDEX_MAGIC).putInt(VERSION).putLong(capacity);
+                return new Index(map, capacity, 0);
+            }
+        }
+
+        /* The table in the file at `path`, or null if it isn't one */
+        static Index open(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                if (size < HEADER_SIZE)
+                    return null;
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                byte[] magic = new byte[4];
+                map.get(0, magic);
+                long capacity = map.getLong(8);
+                if (!Arrays.equals(magic, INDEX_MAGIC) || map.getInt(4) != VERSION
+                        || size != HEADER_SIZE + capacity * SLOT_SIZE || Long.bitCount(capacity) != 1)
+                    return null;
+                return new Index(map, (int) capacity, (int) map.getLong(16));
+            }
+        }
+
+        int getCount() {
+            return this.count;
+        }
+
+        long getDataEnd() {
+            return this.map.getLong(24);
+        }
+
+        void setDataEnd(long dataEnd) {
+            this.map.putLong(24, dataEnd);
+        }
+
+        boolean isTooFull() {
+            return 2 * (this.count + 1) > this.capacity;
+        }
+
+        private int position(long slot) {
+            return HEADER_SIZE + (int) slot * SLOT_SIZE;
+        }
+
+        /* The offset of the key's latest record, or 0 if it has none */
+        long get(byte[] key, long fingerprint, SolutionStore store) {
+            int mask = this.capacity - 1;
+            for (int slot = (int) fingerprint & mask; ; slot = (slot + 1) & mask) {
+                int p = this.position(slot);
+                long offset = (long) LONGS.getAcquire(this.map, p + 8);
+                if (offset == 0)
+                    return 0;
+                if (this.map.getLong(p) == fingerprint && matches(key, offset, store))
+                    return offset;
+            }
+        }
+
+        private static boolean matches(byte[] key, long offset, SolutionStore store) {
+            try {
+                return ByteBuffer.wrap(key).equals(store.read(offset, key.length));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /* Point the key's slot at a new record. Only one thread may put at a time. */
+        void put(byte[] key, long offset, long fingerprint, SolutionStore store) {
+            int mask = this.capacity - 1;
+            for (int slot = (int) fingerprint & mask; ; slot = (slot + 1) & mask) {
+                int p = this.position(slot);
+                long old = (long) LONGS.getAcquire(this.map, p + 8);
+                if (old == 0) {
+                    this.insert(p, fingerprint, offset);
+                    return;
+                }
+                if (this.map.getLong(p) == fingerprint && matches(key, old, store)) {
+                    LONGS.setRelease(this.map, p + 8, offset);
+                    return;
+                }
+            }
+        }
+
+        /* Fill the empty slot at p: the fingerprint first, so that it is there once the offset is */
+        private void insert(int p, long fingerprint, long offset) {
+            this.map.putLong(p, fingerprint);
+            LONGS.setRelease(this.map, p + 8, offset);
+            this.count++;
+            this.map.putLong(16, this.count);
+        }
+
+        /* A table twice the size holding the same records, which replaces this one's file */
+        Index grow(Path path) throws IOException {
+            Path temporary = path.resolveSibling(path.getFileName() + ".new");
+            Index bigger = create(temporary, 2 * this.capacity);
+            int mask = bigger.capacity - 1;
+            for (int slot = 0; slot < this.capacity; ++slot) {
+                int p = this.position(slot);
+                long offset = (long) LONGS.getAcquire(this.map, p + 8);
+                if (offset == 0)
+                    continue;
+                // the keys are all different, so there is no need to compare them
+                long fingerprint = this.map.getLong(p);
+                int s = (int) fingerprint & mask;
+                while ((long) LONGS.getAcquire(bigger.map, bigger.position(s) + 8) != 0)
+                    s = (s + 1) & mask;
+                bigger.insert(bigger.position(s), fingerprint, offset);
+            }
+            bigger.setDataEnd(this.getDataEnd());
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return bigger;
+        }
+
+        void force() {
+            this.map.force();
+        }
+    }
+
+    /**
+     * The log, mapped read-only from its start to `end` in segments of 1 GB. A new view shares
+     * the whole segments of the one before it and only maps the last segment again.
+     */
+    private static class View {
+        private static final int SEGMENT_BITS = 30;
+        private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+        final MappedByteBuffer[] segments;
+        final long end;
+
+        private View(MappedByteBuffer[] segments, long end) {
+            this.segments = segments;
+            this.end = end;
+        }
+
+        static View map(FileChannel data, long end, View old) throws IOException {
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((end + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+            for (int k = 0; k < segments.length; ++k) {
+                long start = (long) k << SEGMENT_BITS;
+                long length = Math.min(end - start, SEGMENT_SIZE);
+                if (old != null && k < old.segments.length && old.segments[k].capacity() == length)
+                    segments[k] = old.segments[k];
+                else
+                    segments[k] = data.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+            return new View(segments, end);
+        }
+
+        /* The bytes [position, position + length) of the log, or null if they aren't all in one segment */
+        ByteBuffer slice(long position, int length) {
+            if (position + length > this.end)
+                return null;
+            int k = (int) (position >>> SEGMENT_BITS);
+            int start = (int) (position & (SEGMENT_SIZE - 1));
+            if (start + (long) length > this.segments[k].capacity())
+                return null;
+            return this.segments[k].slice(start, length);
+        }
+    }
+}
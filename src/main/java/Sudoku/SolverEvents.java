@@ -0,0 +1,136 @@
+package Sudoku;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the life of a puzzle, so that a recording of a batch shows
+ * on a timeline how long each puzzle spent being parsed, waiting for a worker, being solved
+ * and waiting to be written. Record with, for example:
+ *
+ *   java -XX:StartFlightRecording:filename=run.jfr,+sudoku.Guess#enabled=true ...
+ *
+ * Every event has the puzzle's index in its batch (-1 if it has none) and a duration. Guess
+ * events come once per branch of the search, so they are off unless asked for, as above.
+ * When no recording is running, each event costs little more than an allocation that
+ * escape analysis removes.
+ */
+public class SolverEvents {
+
+    private SolverEvents() {
+    }
+
+    @Name("sudoku.PuzzleParsed")
+    @Label("Puzzle Parsed")
+    @Category("Sudoku")
+    @Description("A puzzle read from its text, or loaded into a solver from its text or a board")
+    @StackTrace(false)
+    public static class PuzzleParsed extends Event {
+        @Label("Puzzle")
+        long index;
+    }
+
+    @Name("sudoku.TaskQueued")
+    @Label("Task Queued")
+    @Category("Sudoku")
+    @Description("The time a puzzle waited for a worker (or a batch task) to take it")
+    @StackTrace(false)
+    public static class TaskQueued extends Event {
+        @Label("Puzzle")
+        long index;
+    }
+
+    @Name("sudoku.Solve")
+    @Label("Solve")
+    @Category("Sudoku")
+    @Description("A puzzle answered, from the store or cache or by searching")
+    @StackTrace(false)
+    public static class Solve extends Event {
+        @Label("Puzzle")
+        long index;
+
+        @Label("Engine")
+        String engine;
+
+        @Label("Find All")
+        boolean findAll;
+
+        @Label("Answered From")
+        @Description("store, cache or search")
+        String source;
+
+        @Label("Outcome")
+        @Description("solved, unsolvable, over-budget, invalid or failed")
+        String outcome;
+
+        @Label("Solutions")
+        int solutions;
+
+        @Label("Nodes")
+        @Description("Nodes the standard engine searched, or -1 if they weren't counted")
+        long nodes;
+    }
+
+    @Name("sudoku.Guess")
+    @Label("Guess")
+    @Category("Sudoku")
+    @Description("The standard engine trying an option: copying the board and placing the number")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Guess extends Event {
+        @Label("Puzzle")
+        long index;
+
+        @Label("Depth")
+        int depth;
+
+        @Label("Space")
+        @Description("9 * row + column")
+        int space;
+
+        @Label("Number")
+        int number;
+
+        @Label("Options")
+        @Description("The options the space had")
+        int options;
+    }
+
+    @Name("sudoku.TaskFinished")
+    @Label("Task Finished")
+    @Category("Sudoku")
+    @Description("The time from a puzzle being solved to its result being written in order (when streaming), or returned with the rest of its batch")
+    @StackTrace(false)
+    public static class TaskFinished extends Event {
+        @Label("Puzzle")
+        long index;
+    }
+
+    /* A TaskQueued event for each of n puzzles, all begun now, or null if they aren't being recorded */
+    static TaskQueued[] queued(int n) {
+        if (!new TaskQueued().isEnabled())
+            return null;
+        TaskQueued[] events = new TaskQueued[n];
+        for (int i = 0; i < n; ++i) {
+            events[i] = new TaskQueued();
+            events[i].index = i;
+            events[i].begin();
+        }
+        return events;
+    }
+
+    /* Room for a TaskFinished event for each of n puzzles, or null if they aren't being recorded */
+    static TaskFinished[] finished(int n) {
+        return new TaskFinished().isEnabled() ? new TaskFinished[n] : null;
+    }
+
+    /* The outcome recorded for the solutions a solver returned */
+    static String outcome(SudokuBoard[] solutions) {
+        return solutions == null ? "unsolvable" : solutions == Budget.EXCEEDED ? "over-budget" : "solved";
+    }
+}
@@ -0,0 +1,145 @@
+package Sudoku;
+
+/**
+ * What a SudokuSolver's search did: how many nodes it expanded, how many options it guessed,
+ * how many nodes were dead ends (no solution and nothing left to guess), how large the frontier
+ * of untried guesses and how deep the stack got, and how many numbers each logic pass placed.
+ *
+ * The counters are plain fields that the solver increments in place, so counting allocates
+ * nothing. A solver counts into its stats (see SudokuSolver.getStats()), which hold the last
+ * search; a solver given null stats counts nothing, and running with -Dsudoku.stats=false
+ * turns counting off in every solver, where the JIT drops it altogether.
+ *
+ * Stats are not thread-safe, except for add(), so that one instance can total many searches.
+ */
+public class SolverStats {
+
+    public static final boolean ENABLED = !"false".equals(System.getProperty("sudoku.stats"));
+
+    long searches;
+    long nodes;
+    long guesses;
+    long deadEnds;
+    long maxFrontier;
+    long maxDepth;
+    long placedBySingles;
+    long placedInRows;
+    long placedInCols;
+    long placedInBoxes;
+
+    /* Start counting a new search */
+    void startSearch() {
+        this.reset();
+        this.searches = 1;
+    }
+
+    /* A number placed by tryToFillInUnit(u) */
+    void placedInUnit(int u) {
+        if (u < 9)
+            this.placedInRows++;
+        else if (u < 18)
+            this.placedInCols++;
+        else
+            this.placedInBoxes++;
+    }
+
+    /* The stack reached `depth` boards, with `frontier` untried guesses on it */
+    void reached(int depth, int frontier) {
+        if (depth > this.maxDepth)
+            this.maxDepth = depth;
+        if (frontier > this.maxFrontier)
+            this.maxFrontier = frontier;
+    }
+
+    public void reset() {
+        this.searches = 0;
+        this.nodes = 0;
+        this.guesses = 0;
+        this.deadEnds = 0;
+        this.maxFrontier = 0;
+        this.maxDepth = 0;
+        this.placedBySingles = 0;
+        this.placedInRows = 0;
+        this.placedInCols = 0;
+        this.placedInBoxes = 0;
+    }
+
+    /** Add the counts of `other` to these, and take the larger of the maximums **/
+    public synchronized void add(SolverStats other) {
+        this.searches += other.searches;
+        this.nodes += other.nodes;
+        this.guesses += other.guesses;
+        this.deadEnds += other.deadEnds;
+        this.maxFrontier = Math.max(this.maxFrontier, other.maxFrontier);
+        this.maxDepth = Math.max(this.maxDepth, other.maxDepth);
+        this.placedBySingles += other.placedBySingles;
+        this.placedInRows += other.placedInRows;
+        this.placedInCols += other.placedInCols;
+        this.placedInBoxes += other.placedInBoxes;
+    }
+
+    /** A copy of these stats, to keep after the solver moves on to another puzzle **/
+    public synchronized SolverStats copy() {
+        SolverStats copy = new SolverStats();
+        copy.add(this);
+        return copy;
+    }
+
+    /** The number of searches counted (one, unless these are totals) **/
+    public synchronized long getSearches() {
+        return this.searches;
+    }
+
+    /** Boards the search applied logic to, the first one included **/
+    public synchronized long getNodes() {
+        return this.nodes;
+    }
+
+    /** Options tried at guesses **/
+    public synchronized long getGuesses() {
+        return this.guesses;
+    }
+
+    /** Boards that weren't solutions and had no space left to guess in **/
+    public synchronized long getDeadEnds() {
+        return this.deadEnds;
+    }
+
+    /** The most untried guesses waiting on the stack at once **/
+    public synchronized long getMaxFrontier() {
+        return this.maxFrontier;
+    }
+
+    /** The most guesses on the stack at once **/
+    public synchronized long getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    /** Numbers placed by reduceOptions(): spaces with a single option left **/
+    public synchronized long getPlacedBySingles() {
+        return this.placedBySingles;
+    }
+
+    /** Numbers placed by the row pass: the only space in a row that can hold them **/
+    public synchronized long getPlacedInRows() {
+        return this.placedInRows;
+    }
+
+    /** Numbers placed by the column pass **/
+    public synchronized long getPlacedInCols() {
+        return this.placedInCols;
+    }
+
+    /** Numbers placed by the submatrix pass **/
+    public synchronized long getPlacedInBoxes() {
+        return this.placedInBoxes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return this.nodes + " nodes, " + this.guesses + " guesses, " + this.deadEnds + " dead ends, max frontier "
+                + this.maxFrontier + ", max depth " + this.maxDepth + ", placed " + this.placedBySingles
+                + " singles, " + this.placedInRows + " in rows, " + this.placedInCols + " in columns, "
+                + this.placedInBoxes + " in submatrices";
+    }
+}
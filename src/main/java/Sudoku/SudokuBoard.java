@@ -2,10 +2,17 @@ package Sudoku;
 
 import java.util.Arrays;
 
-public class SudokuBoard {
+public class SudokuBoard implements GuessStrategy.Grid {
 
     public static int EMPTY_ENTRY = 0;
 
+    /*
+     * When true, setEntry() rebuilds every space's options from scratch instead of
+     * only removing the placed number from the peers of the changed space. This is
+     * much slower, but useful for checking the incremental updates.
+     */
+    public static boolean VERIFY_OPTIONS = false;
+
     protected static int toSubmatrixIndex(int i, int j) {
         return (i / 3) * 3 + (j / 3);
     }
@@ -14,6 +21,38 @@ public class SudokuBoard {
         return new int[]{3 * (k / 3), 3 * (k % 3)};
     }
 
+    /*
+     * Index tables over the spaces numbered 0-80 (space (i, j) is 9 * i + j).
+     * There are 27 units: rows 0-8, then columns 9-17, then submatrices 18-26.
+     *   UNITS[u]      the nine spaces in unit u
+     *   CELL_UNITS[c] the row, column, and submatrix units containing space c
+     *   PEERS[c]      the 20 other spaces sharing a unit with space c
+     */
+    protected static final int[][] UNITS = new int[27][9];
+    protected static final int[][] CELL_UNITS = new int[81][3];
+    protected static final int[][] PEERS = new int[81][20];
+
+    static {
+        for (int c = 0; c < 81; ++c) {
+            int i = c / 9, j = c % 9, k = toSubmatrixIndex(i, j);
+            CELL_UNITS[c][0] = i;
+            CELL_UNITS[c][1] = 9 + j;
+            CELL_UNITS[c][2] = 18 + k;
+            UNITS[i][j] = c;
+            UNITS[9 + j][i] = c;
+            UNITS[18 + k][(i % 3) * 3 + (j % 3)] = c;
+        }
+        for (int c = 0; c < 81; ++c) {
+            int n = 0;
+            for (int p = 0; p < 81; ++p) {
+                if (p != c && (CELL_UNITS[p][0] == CELL_UNITS[c][0]
+                        || CELL_UNITS[p][1] == CELL_UNITS[c][1]
+                        || CELL_UNITS[p][2] == CELL_UNITS[c][2]))
+                    PEERS[c][n++] = p;
+            }
+        }
+    }
+
     public static class SudokuException extends Exception {
         public SudokuException(String message) {
             super(message);
@@ -59,17 +98,7 @@ public class SudokuBoard {
 
     public SudokuBoard(String s) throws SudokuException {
         this.init();
-        if (s.length() < 81)
-            throw new SudokuException("Not enough characters in string to construct a board.");
-        for (int i = 0; i < Math.min(81, s.length()); ++i) {
-            int c = s.charAt(i);
-            if ('1' <= c && c <= '9') {
-                this.entries[i / 9][i % 9] = c - '0';
-                this.nEntriesFilled++;
-            }
-        }
-        this.updateComponentOptions();
-        this.updateOptions();
+        this.parse(s);
     }
 
     public SudokuBoard(SudokuBoard other)  {
@@ -97,26 +126,58 @@ public class SudokuBoard {
         }
     }
 
-    public void copyFrom(SudokuBoard other) {
+    /** Replace this board with the puzzle in s, reusing the arrays it already has **/
+    public void load(CharSequence s) throws SudokuException {
+        this.parse(s);
+    }
+
+    private void parse(CharSequence s) throws SudokuException {
+        if (s.length() < 81)
+            throw new SudokuException("Not enough characters in string to construct a board.");
         this.nEntriesFilled = 0;
-        for (int i = 0; i < 9; ++i) {
-            for (int j = 0; j < 9; ++j) {
-                // anything not in the range [1, 9] is assumed to be a blank space
-                int n = other.getEntry(i, j);
-                if (1 <= n && n <= 9) {
-                    this.entries[i][j] = n;
-                    this.nEntriesFilled++;
-                } else {
-                    this.entries[i][j] = EMPTY_ENTRY;
-                }
+        for (int i = 0; i < 81; ++i) {
+            int c = s.charAt(i);
+            if ('1' <= c && c <= '9') {
+                this.entries[i / 9][i % 9] = c - '0';
+                this.nEntriesFilled++;
+            } else {
+                this.entries[i / 9][i % 9] = EMPTY_ENTRY;
             }
         }
         this.updateComponentOptions();
         this.updateOptions();
     }
 
-    public boolean equals(SudokuBoard other) {
-        return Arrays.equals(this.entries, other.entries);
+    /**
+     * Copy the entries and options of another board. The options are copied rather than
+     * rebuilt from the entries, so any options a solver has ruled out stay ruled out.
+     */
+    public void copyFrom(SudokuBoard other) {
+        this.nEntriesFilled = other.nEntriesFilled;
+        for (int i = 0; i < 9; ++i) {
+            System.arraycopy(other.entries[i], 0, this.entries[i], 0, 9);
+            this.rowOptions[i].copyFrom(other.rowOptions[i]);
+            this.colOptions[i].copyFrom(other.colOptions[i]);
+            this.submatrixOptions[i].copyFrom(other.submatrixOptions[i]);
+            for (int j = 0; j < 9; ++j) {
+                this.options[i][j].copyFrom(other.options[i][j]);
+            }
+        }
+    }
+
+    /** Boards are equal if they have the same entries, whatever their options and class **/
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (!(other instanceof SudokuBoard))
+            return false;
+        return Arrays.deepEquals(this.entries, ((SudokuBoard) other).entries);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.deepHashCode(this.entries);
     }
 
     public boolean isFilled() {
@@ -127,6 +188,11 @@ public class SudokuBoard {
         return this.entries[i][j];
     }
 
+    /** The mask (see IntSet) of numbers that might fill space c = 9 * i + j **/
+    public int getOptions(int c) {
+        return this.options[c / 9][c % 9].mask();
+    }
+
     /** Set the entry at (i, j) to n only if the value has not been set **/
     public void setEntry(int i, int j, int n) {
         if (this.entries[i][j] > 0)
@@ -139,24 +205,42 @@ public class SudokuBoard {
         this.colOptions[j].remove(n);
         this.submatrixOptions[toSubmatrixIndex(i, j)].remove(n);
 
-        this.updateOptions();
+        if (VERIFY_OPTIONS)
+            this.updateOptions();
+        else
+            this.removeOptionFromPeers(i, j, n);
+    }
+
+    /**
+     * Placing n at (i, j) can only change the options of spaces in the same row,
+     * column, or submatrix, so remove n from just those spaces (the 20 "peers").
+     */
+    protected void removeOptionFromPeers(int i, int j, int n) {
+        this.options[i][j].clear();
+        for (int k = 0; k < 9; ++k) {
+            this.options[i][k].remove(n);
+            this.options[k][j].remove(n);
+        }
+        final int i0 = 3 * (i / 3), j0 = 3 * (j / 3);
+        for (int si = i0; si < i0 + 3; ++si) {
+            for (int sj = j0; sj < j0 + 3; ++sj) {
+                this.options[si][sj].remove(n);
+            }
+        }
     }
 
     /** Update the `options` array of numbers that can go in each space **/
     protected void updateOptions() {
         for (int i = 0; i < 9 ; ++i) {
             for (int j = 0; j < 9; ++j) {
-                this.options[i][j].clear();
-                // If the space is unfilled, check the row, col, and submatrix
-                // to see which numbers can be placed there
+                // If the space is unfilled, the numbers that can be placed there are
+                // the ones remaining in its row, col, and submatrix
                 if (this.entries[i][j] < 1) {
-                    for (int n = 1; n <= 9; ++n) {
-                        if (this.colOptions[j].contains(n)
-                                && this.rowOptions[i].contains(n)
-                                && this.submatrixOptions[toSubmatrixIndex(i, j)].contains(n)) {
-                            this.options[i][j].add(n);
-                        }
-                    }
+                    this.options[i][j].setMask(this.rowOptions[i].mask()
+                            & this.colOptions[j].mask()
+                            & this.submatrixOptions[toSubmatrixIndex(i, j)].mask());
+                } else {
+                    this.options[i][j].clear();
                 }
             }
         }
@@ -1,6 +1,9 @@
 package Sudoku;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -9,12 +12,127 @@ public class SudokuSolver extends SudokuBoard {
     // solveAll() quits once it finds this many solutions
     public static int MAX_SOLNS = 20;
 
+    /**
+     * Passes that applyLogic() can use to rule out options, in addition to placing singles.
+     * They are listed (and run) roughly from cheapest to most expensive.
+     */
+    public enum Technique {
+        /* A number confined to one row or column within a submatrix is removed from the rest of that line */
+        POINTING,
+        /* A number confined to one submatrix within a row or column is removed from the rest of that submatrix */
+        BOX_LINE,
+        /* Two spaces in a unit with the same two options: no other space in the unit can have them */
+        NAKED_PAIRS,
+        /* Two numbers with only the same two spaces in a unit: those spaces can't hold anything else */
+        HIDDEN_PAIRS,
+        /* Like NAKED_PAIRS, for three spaces whose options are three numbers between them */
+        NAKED_TRIPLES,
+        /* Like HIDDEN_PAIRS, for three numbers confined to three spaces */
+        HIDDEN_TRIPLES;
+
+        public String flagName() {
+            return this.name().toLowerCase().replace('_', '-');
+        }
+
+        /** Parse a comma-separated list of techniques such as "pointing,naked-pairs", or "all", or "none" **/
+        public static EnumSet<Technique> parse(String names) {
+            EnumSet<Technique> result = EnumSet.noneOf(Technique.class);
+            for (String name: names.split(",")) {
+                name = name.trim();
+                if (name.equalsIgnoreCase("all")) {
+                    result.addAll(EnumSet.allOf(Technique.class));
+                } else if (!name.equalsIgnoreCase("none")) {
+                    result.add(Technique.valueOf(name.toUpperCase().replace('-', '_')));
+                }
+            }
+            return result;
+        }
+
+        public static String names() {
+            String result = "";
+            for (Technique t: values())
+                result += t.flagName() + ", ";
+            return result + "all";
+        }
+    }
+
+    // The techniques used by solvers that are constructed from a String
+    public static EnumSet<Technique> TECHNIQUES = EnumSet.noneOf(Technique.class);
+
+    // The guess strategy used by new solvers (of any engine) that aren't copies of another solver.
+    // Each solver takes its own instance from GUESS_STRATEGY.forPuzzle().
+    public static GuessStrategy GUESS_STRATEGY = new GuessStrategies.MinimumRemainingValues();
+
+    // The techniques, guess strategy and budget this solver uses. Shared by the boards on one search's frontier.
+    protected EnumSet<Technique> techniques;
+    protected GuessStrategy guessStrategy;
+    protected Budget budget;
+
+    // What the last search did. Shared by the boards on its stack, like the settings above.
+    protected SolverStats stats;
+
+    // The puzzle's index in its batch, for the Guess events the search records (see SolverEvents)
+    long puzzleIndex = -1;
+
+    /* The search's board stack and, for each board that guessed, the guessed space, its options
+     * in the order to try them, and how many have been tried. Created by the first search. */
+    private SudokuSolver[] stack;
+    private int[] guessCells;
+    private int[][] guessOrder;
+    private int[] nOptions;
+    private int[] nTried;
+    private SudokuSolver lastSolution;
+
+    // Scratch for eliminateHiddenSubsets: where[n] has bit p set if unit[p] can hold n
+    private final int[] where = new int[10];
+
     public SudokuSolver(String s) throws SudokuException {
         super(s);
+        this.techniques = EnumSet.copyOf(TECHNIQUES);
+        this.guessStrategy = GUESS_STRATEGY.forPuzzle(-1);
+        this.budget = Budget.PER_PUZZLE;
+        this.stats = SolverStats.ENABLED ? new SolverStats() : null;
     }
 
     public SudokuSolver(SudokuBoard board) {
         super(board);
+        if (board instanceof SudokuSolver) {
+            this.techniques = ((SudokuSolver) board).techniques;
+            this.guessStrategy = ((SudokuSolver) board).guessStrategy;
+            this.budget = ((SudokuSolver) board).budget;
+            this.stats = ((SudokuSolver) board).stats;
+        } else {
+            this.techniques = EnumSet.copyOf(TECHNIQUES);
+            this.guessStrategy = GUESS_STRATEGY.forPuzzle(-1);
+            this.budget = Budget.PER_PUZZLE;
+            this.stats = SolverStats.ENABLED ? new SolverStats() : null;
+        }
+    }
+
+    public void setTechniques(EnumSet<Technique> techniques) {
+        this.techniques = EnumSet.copyOf(techniques);
+    }
+
+    public void setGuessStrategy(GuessStrategy guessStrategy) {
+        this.guessStrategy = guessStrategy;
+    }
+
+    /** Limit each search this solver runs. Searches that go over throw a Budget.ExceededException. **/
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * What the last search (solve(), solveAll() or countSolutions()) did, counted as it ran,
+     * or null if this solver doesn't count. The same instance is reset by every search.
+     */
+    public SolverStats getStats() {
+        return this.stats;
+    }
+
+    /** Count searches into these stats from now on, or nothing if they are null **/
+    public void setStats(SolverStats stats) {
+        this.stats = stats;
     }
 
     /**
@@ -22,26 +140,10 @@ public class SudokuSolver extends SudokuBoard {
      * @return true if a solution was found
      */
     public boolean solve() {
-        LinkedList<SudokuSolver> frontier = new LinkedList<SudokuSolver>();
-        frontier.push(new SudokuSolver(this));
-        while (!frontier.isEmpty()) {
-            SudokuSolver sb = frontier.pop();
-            sb.applyLogic();
-            if (sb.isFilled() && sb.isSolution()) {
-                this.copyFrom(sb);
-                return true;
-            } else {
-                int[] guess = sb.findMostAttractiveGuess();
-                if (guess[0] >= 0) {
-                    for (int n: sb.options[guess[0]][guess[1]].toArray()) {
-                        SudokuSolver g = new SudokuSolver(sb);
-                        g.setEntry(guess[0], guess[1], n);
-                        frontier.push(g);
-                    }
-                }
-            }
-        }
-        return false;
+        if (this.search(1, null) == 0)
+            return false;
+        this.copyFrom(this.lastSolution);
+        return true;
     }
 
     /**
@@ -51,28 +153,142 @@ public class SudokuSolver extends SudokuBoard {
      * @return A List containing all solutions found.
      */
     public List<SudokuBoard> solveAll() {
+        return this.solveAll(MAX_SOLNS);
+    }
+
+    /**
+     * Find all possible solutions, quitting once its found `limit` solutions.
+     *
+     * @return A List containing all solutions found.
+     */
+    public List<SudokuBoard> solveAll(int limit) {
         LinkedList<SudokuBoard> results = new LinkedList<SudokuBoard>();
-        LinkedList<SudokuSolver> frontier = new LinkedList<SudokuSolver>();
-        frontier.push(new SudokuSolver(this));
-        while (!frontier.isEmpty()) {
-            SudokuSolver sb = frontier.pop();
+        this.search(limit, results);
+        return results;
+    }
+
+    /**
+     * Count the solutions, quitting once `limit` have been found. No solutions are kept,
+     * so this is cheaper than solveAll() when only the number matters.
+     *
+     * @return The number of solutions found, at most `limit`.
+     */
+    public int countSolutions(int limit) {
+        return this.search(limit, null);
+    }
+
+    /** Return true if the puzzle has exactly one solution. This stops at the second one. **/
+    public boolean isUnique() {
+        return this.countSolutions(2) == 1;
+    }
+
+    /*
+     * Search for up to `limit` solutions, adding a copy of each one to `results` unless it is
+     * null. Return the number of solutions found. If the limit is reached, `lastSolution` is
+     * the board holding the last one.
+     *
+     * The search is depth first over a stack of boards, one per guess, that is kept between
+     * searches. Trying an option copies the board below it into the next board up, so the
+     * search itself does not allocate boards.
+     *
+     * The frontier counted in the stats is the options not yet tried at the guesses on the stack.
+     */
+    protected int search(int limit, List<SudokuBoard> results) {
+        int found = 0;
+        if (limit <= 0)
+            return found;
+        this.prepareStack();
+        SolverStats stats = SolverStats.ENABLED ? this.stats : null;
+        if (stats != null)
+            stats.startSearch();
+        Budget.Meter meter = this.budget.start();
+        this.boardAt(0).copyFrom(this);
+        int depth = 0;
+        int frontier = 0;
+        while (true) {
+            SudokuSolver sb = this.stack[depth];
+            meter.tick();
+            if (stats != null)
+                stats.nodes++;
             sb.applyLogic();
+            boolean guessed = false;
             if (sb.isFilled() && sb.isSolution()) {
-                results.add(sb);
-                if (results.size() >= MAX_SOLNS)
-                    return results;
+                found++;
+                if (results != null)
+                    results.add(new SudokuSolver(sb));
+                if (found >= limit) {
+                    this.lastSolution = sb;
+                    return found;
+                }
             } else {
-                int[] guess = sb.findMostAttractiveGuess();
-                if (guess[0] >= 0) {
-                    for (int n: sb.options[guess[0]][guess[1]].toArray()) {
-                        SudokuSolver g = new SudokuSolver(sb);
-                        g.setEntry(guess[0], guess[1], n);
-                        frontier.push(g);
-                    }
+                int c = sb.findMostAttractiveGuess();
+                if (c >= 0) {
+                    this.guessCells[depth] = c;
+                    this.nOptions[depth] = sb.guessStrategy.orderOptions(sb, c, this.guessOrder[depth]);
+                    this.nTried[depth] = 0;
+                    guessed = this.nOptions[depth] > 0;
+                    frontier += this.nOptions[depth];
                 }
+                if (!guessed && stats != null)
+                    stats.deadEnds++;
+            }
+            if (!guessed) {
+                // backtrack to the deepest guess with options left to try
+                do {
+                    depth--;
+                } while (depth >= 0 && this.nTried[depth] == this.nOptions[depth]);
+                if (depth < 0)
+                    return found;
+            }
+            SolverEvents.Guess event = new SolverEvents.Guess();
+            event.begin();
+            int c = this.guessCells[depth];
+            int n = this.guessOrder[depth][this.nTried[depth]++];
+            SudokuSolver next = this.boardAt(depth + 1);
+            next.copyFrom(this.stack[depth]);
+            next.setEntry(c / 9, c % 9, n);
+            depth++;
+            frontier--;
+            event.end();
+            if (event.shouldCommit()) {
+                event.index = this.puzzleIndex;
+                event.depth = depth;
+                event.space = c;
+                event.number = n;
+                event.options = this.nOptions[depth - 1];
+                event.commit();
+            }
+            if (stats != null) {
+                stats.guesses++;
+                stats.reached(depth, frontier);
             }
         }
-        return results;
+    }
+
+    /* Create the stack on first use, and make the boards already on it use this solver's settings */
+    private void prepareStack() {
+        if (this.stack == null) {
+            // every guess fills a space, so there are at most 81 guesses
+            this.stack = new SudokuSolver[82];
+            this.guessCells = new int[81];
+            this.guessOrder = new int[81][9];
+            this.nOptions = new int[81];
+            this.nTried = new int[81];
+        }
+        for (SudokuSolver sb: this.stack) {
+            if (sb == null)
+                break;
+            sb.techniques = this.techniques;
+            sb.guessStrategy = this.guessStrategy;
+            sb.stats = this.stats;
+        }
+    }
+
+    /* The board at the given depth of the stack, created the first time the search gets that deep */
+    private SudokuSolver boardAt(int depth) {
+        if (this.stack[depth] == null)
+            this.stack[depth] = new SudokuSolver(this);
+        return this.stack[depth];
     }
 
     /** Try to fill in values intelligently (as opposed to guessing) */
@@ -80,7 +296,206 @@ public class SudokuSolver extends SudokuBoard {
         while(this.reduceOptions()
                 || this.tryToFinishRows()
                 || this.tryToFinishCols()
-                || this.tryToFinishSubmatrices());
+                || this.tryToFinishSubmatrices()
+                || this.eliminateOptions());
+    }
+
+    /* Run the enabled techniques, stopping at the first one that rules out any options
+     * so that the cheaper passes which place numbers get another try.
+     * Return true if the board changed.
+     */
+    protected boolean eliminateOptions() {
+        for (Technique t: this.techniques) {
+            boolean stateChanged;
+            switch (t) {
+                case POINTING:       stateChanged = this.eliminatePointing(); break;
+                case BOX_LINE:       stateChanged = this.eliminateBoxLine(); break;
+                case NAKED_PAIRS:    stateChanged = this.eliminateNakedSubsets(2); break;
+                case HIDDEN_PAIRS:   stateChanged = this.eliminateHiddenSubsets(2); break;
+                case NAKED_TRIPLES:  stateChanged = this.eliminateNakedSubsets(3); break;
+                case HIDDEN_TRIPLES: stateChanged = this.eliminateHiddenSubsets(3); break;
+                default:             stateChanged = false;
+            }
+            if (stateChanged)
+                return true;
+        }
+        return false;
+    }
+
+    /* The options of space c, where c = 9 * i + j */
+    private IntSet optionsAt(int c) {
+        return this.options[c / 9][c % 9];
+    }
+
+    /* Remove the numbers in `mask` from the options of space c. Return true if any were removed. */
+    protected boolean removeOptions(int c, int mask) {
+        IntSet set = this.optionsAt(c);
+        int hit = set.mask() & mask;
+        set.setMask(set.mask() & ~hit);
+        return hit != 0;
+    }
+
+    /* Remove n from each space of `unit` that is not also in the unit `outside` */
+    private boolean removeFromUnitOutside(int[] unit, int n, int outside) {
+        boolean stateChanged = false;
+        for (int c: unit) {
+            if (CELL_UNITS[c][outside / 9] != outside && this.removeOptions(c, 1 << n))
+                stateChanged = true;
+        }
+        return stateChanged;
+    }
+
+    /*
+     * For each submatrix and number n, if every space in the submatrix that can hold n is
+     * in the same row (or column), then n can't go anywhere else in that row (or column).
+     */
+    protected boolean eliminatePointing() {
+        boolean stateChanged = false;
+        for (int k = 0; k < 9; ++k) {
+            for (int n = 1; n <= 9; ++n) {
+                int count = 0, row = -1, col = -1;
+                boolean sameRow = true, sameCol = true;
+                for (int c: UNITS[18 + k]) {
+                    if (this.optionsAt(c).contains(n)) {
+                        if (count++ == 0) {
+                            row = c / 9;
+                            col = c % 9;
+                        } else {
+                            sameRow &= c / 9 == row;
+                            sameCol &= c % 9 == col;
+                        }
+                    }
+                }
+                if (count < 2)
+                    continue;
+                if (sameRow && this.removeFromUnitOutside(UNITS[row], n, 18 + k))
+                    stateChanged = true;
+                if (sameCol && this.removeFromUnitOutside(UNITS[9 + col], n, 18 + k))
+                    stateChanged = true;
+            }
+        }
+        return stateChanged;
+    }
+
+    /*
+     * For each row or column and number n, if every space in the line that can hold n is in
+     * the same submatrix, then n can't go anywhere else in that submatrix.
+     */
+    protected boolean eliminateBoxLine() {
+        boolean stateChanged = false;
+        for (int u = 0; u < 18; ++u) {
+            for (int n = 1; n <= 9; ++n) {
+                int count = 0, box = -1;
+                boolean sameBox = true;
+                for (int c: UNITS[u]) {
+                    if (this.optionsAt(c).contains(n)) {
+                        if (count++ == 0)
+                            box = CELL_UNITS[c][2];
+                        else
+                            sameBox &= CELL_UNITS[c][2] == box;
+                    }
+                }
+                if (count >= 2 && sameBox && this.removeFromUnitOutside(UNITS[box], n, u))
+                    stateChanged = true;
+            }
+        }
+        return stateChanged;
+    }
+
+    /*
+     * If `size` spaces in a unit have only `size` options between them, those numbers must
+     * go in those spaces, so remove them from the other spaces in the unit.
+     */
+    protected boolean eliminateNakedSubsets(int size) {
+        boolean stateChanged = false;
+        for (int[] unit: UNITS) {
+            for (int a = 0; a < 9; ++a) {
+                int ma = this.optionsAt(unit[a]).mask();
+                if (Integer.bitCount(ma) < 2 || Integer.bitCount(ma) > size)
+                    continue;
+                for (int b = a + 1; b < 9; ++b) {
+                    int mb = this.optionsAt(unit[b]).mask();
+                    int mab = ma | mb;
+                    if (Integer.bitCount(mb) < 2 || Integer.bitCount(mab) > size)
+                        continue;
+                    if (size == 2) {
+                        if (this.removeFromUnitExcept(unit, mab, (1 << a) | (1 << b)))
+                            stateChanged = true;
+                        continue;
+                    }
+                    for (int d = b + 1; d < 9; ++d) {
+                        int md = this.optionsAt(unit[d]).mask();
+                        int mabd = mab | md;
+                        if (Integer.bitCount(md) < 2 || Integer.bitCount(mabd) != size)
+                            continue;
+                        if (this.removeFromUnitExcept(unit, mabd, (1 << a) | (1 << b) | (1 << d)))
+                            stateChanged = true;
+                    }
+                }
+            }
+        }
+        return stateChanged;
+    }
+
+    /* Remove the numbers in `mask` from each space of `unit` whose position is not in `keep` */
+    private boolean removeFromUnitExcept(int[] unit, int mask, int keep) {
+        boolean stateChanged = false;
+        for (int p = 0; p < 9; ++p) {
+            if ((keep & (1 << p)) == 0 && this.removeOptions(unit[p], mask))
+                stateChanged = true;
+        }
+        return stateChanged;
+    }
+
+    /*
+     * If `size` numbers in a unit can only go in the same `size` spaces, those spaces can't
+     * hold anything else.
+     */
+    protected boolean eliminateHiddenSubsets(int size) {
+        boolean stateChanged = false;
+        final int[] where = this.where;
+        for (int[] unit: UNITS) {
+            for (int n = 1; n <= 9; ++n) {
+                where[n] = 0;
+                for (int p = 0; p < 9; ++p) {
+                    if (this.optionsAt(unit[p]).contains(n))
+                        where[n] |= 1 << p;
+                }
+            }
+            for (int a = 1; a <= 9; ++a) {
+                if (where[a] == 0 || Integer.bitCount(where[a]) > size)
+                    continue;
+                for (int b = a + 1; b <= 9; ++b) {
+                    int wab = where[a] | where[b];
+                    if (where[b] == 0 || Integer.bitCount(wab) > size)
+                        continue;
+                    if (size == 2) {
+                        if (Integer.bitCount(wab) == 2
+                                && this.restrictSpaces(unit, wab, (1 << a) | (1 << b)))
+                            stateChanged = true;
+                        continue;
+                    }
+                    for (int d = b + 1; d <= 9; ++d) {
+                        int wabd = wab | where[d];
+                        if (where[d] == 0 || Integer.bitCount(wabd) != size)
+                            continue;
+                        if (this.restrictSpaces(unit, wabd, (1 << a) | (1 << b) | (1 << d)))
+                            stateChanged = true;
+                    }
+                }
+            }
+        }
+        return stateChanged;
+    }
+
+    /* Remove everything but the numbers in `mask` from the spaces of `unit` at the positions in `positions` */
+    private boolean restrictSpaces(int[] unit, int positions, int mask) {
+        boolean stateChanged = false;
+        for (int p = positions; p != 0; p &= p - 1) {
+            if (this.removeOptions(unit[Integer.numberOfTrailingZeros(p)], ~mask))
+                stateChanged = true;
+        }
+        return stateChanged;
     }
 
     /* For any space only one possible number remaining, fill the space with that number.
@@ -93,30 +508,20 @@ public class SudokuSolver extends SudokuBoard {
                 if (this.options[i][j] != null && this.options[i][j].size() == 1) {
                     this.setEntry(i, j, this.options[i][j].getFirst());
                     stateChanged = true;
+                    if (SolverStats.ENABLED && this.stats != null)
+                        this.stats.placedBySingles++;
                 }
             }
         }
         return stateChanged;
     }
 
-    /* This method finds the next space where the solver will guess numbers.
-     * Currently, this finds the entry with the fewest number of options left.
+    /* This method finds the next space where the solver will guess numbers,
+     * as chosen by the guess strategy. Returns the space c = 9 * i + j, or -1 if
+     * no space has any options left.
      */
-    protected int[] findMostAttractiveGuess() {
-        int min = 10;
-        int imin = -1;
-        int jmin = -1;
-        for (int i = 0; i < 9; ++i) {
-            for (int j = 0; j < 9; ++j) {
-                int size = this.options[i][j].size();
-                if (size > 0 && size < min) {
-                    min = size;
-                    imin = i;
-                    jmin = j;
-                }
-            }
-        }
-        return new int[]{imin, jmin};
+    protected int findMostAttractiveGuess() {
+        return this.guessStrategy.selectSpace(this);
     }
 
     public boolean tryToFinishSubmatrices() {
@@ -148,73 +553,47 @@ public class SudokuSolver extends SudokuBoard {
      * n as an option then n must go in that space.
      */
     protected boolean tryToFillInRow(int i) {
-        boolean stateChanged = false;
-        for (int n: this.rowOptions[i].toArray()) {
-            int k = -1;  // the index in the row where we see n
-            for (int j = 0; j < 9; ++j) {
-                if (this.entries[i][j] <= EMPTY_ENTRY && this.options[i][j].contains(n)) {
-                    if (k >= 0) {   // if we've already seen n once in the row
-                        k = -1;     // then we can't determine the space n goes in
-                        break;
-                    } else {        // otherwise, we've never seen n before, so store its location
-                        k = j;
-                    }
-                }
-            }
-            if (k >= 0) {
-                this.setEntry(i, k, n);
-                stateChanged = true;
-            }
-        }
-        return stateChanged;
+        return this.tryToFillInUnit(i);
     }
 
     /* similar to tryToFillInRow */
     protected boolean tryToFillInCol(int j) {
-        boolean stateChanged = false;
-        for (int n: this.colOptions[j].toArray()) {
-            int k = -1;
-            for (int i = 0; i < 9; ++i) {
-                if (this.entries[i][j] <= EMPTY_ENTRY && this.options[i][j].contains(n)) {
-                    if (k >= 0) {
-                        k = -1;
-                        break;
-                    } else {
-                        k = i;
-                    }
-                }
-            }
-            if (k >= 0) {
-                this.setEntry(k, j, n);
-                stateChanged = true;
-            }
-        }
-        return stateChanged;
+        return this.tryToFillInUnit(9 + j);
     }
 
-    /* similar to try toFillInRow */
+    /* similar to tryToFillInRow */
     protected boolean tryToFillInSubmatrix(int submatrix) {
+        return this.tryToFillInUnit(18 + submatrix);
+    }
+
+    /*
+     * Place every number that only one space in unit u (see SudokuBoard.UNITS) can hold.
+     *
+     * Rather than checking each number against each space, this makes one pass over the
+     * options of the unit's spaces: `once` collects the numbers seen in at least one space,
+     * and `twice` those seen in at least two. So `once & ~twice` is every number with exactly
+     * one possible space, and a second pass finds those spaces.
+     */
+    protected boolean tryToFillInUnit(int u) {
+        final int[] unit = UNITS[u];
+        int once = 0, twice = 0;
+        for (int c: unit) {
+            int m = this.optionsAt(c).mask();
+            twice |= once & m;
+            once |= m;
+        }
+        final int singles = once & ~twice;
+        if (singles == 0)
+            return false;
         boolean stateChanged = false;
-        final int[] ijCoords = SudokuBoard.fromSubmatrixIndex(submatrix);
-        for (int n: this.submatrixOptions[submatrix].toArray()) {
-            int ki = -1, kj = -1;   // the coordinates where we see n in the submatrix
-
-            innerLoop: for (int i = ijCoords[0]; i < ijCoords[0] + 3; ++i) {
-                for (int j = ijCoords[1]; j < ijCoords[1] + 3; ++j) {
-                    if (this.entries[i][j] <= EMPTY_ENTRY && this.options[i][j].contains(n)) {
-                        if (ki >= 0) {          // if we've already seen n
-                            ki = kj = -1;       // then we can't determine where n goes
-                            break innerLoop;
-                        } else {                // otherwise, we've never seen n, so store its location
-                            ki = i;
-                            kj = j;
-                        }
-                    }
-                }
-            }
-            if (ki >= 0) {
-                this.setEntry(ki, kj, n);
+        for (int c: unit) {
+            // if a space is the only home for two numbers, the board is stuck; place one of them
+            int m = this.optionsAt(c).mask() & singles;
+            if (m != 0) {
+                this.setEntry(c / 9, c % 9, Integer.numberOfTrailingZeros(m));
                 stateChanged = true;
+                if (SolverStats.ENABLED && this.stats != null)
+                    this.stats.placedInUnit(u);
             }
         }
         return stateChanged;
@@ -233,12 +612,22 @@ public class SudokuSolver extends SudokuBoard {
     }
 
     public static SudokuBoard[][] run(String[] puzzles, boolean findAll) {
-        SudokuBoard[][] solutions = new SudokuBoard[puzzles.length][];
-        for (int i = 0; i < puzzles.length; ++i) {
+        return run(puzzles, findAll, Engine.STANDARD);
+    }
+
+    public static SudokuBoard[][] run(String[] puzzles, boolean findAll, Engine engine) {
+        return run(Arrays.asList(puzzles), findAll, engine);
+    }
+
+    public static SudokuBoard[][] run(List<? extends CharSequence> puzzles, boolean findAll, Engine engine) {
+        SudokuBoard[][] solutions = new SudokuBoard[puzzles.size()][];
+        for (int i = 0; i < solutions.length; ++i) {
             try {
-                solutions[i] = solve(new SudokuSolver(puzzles[i]), findAll);
+                solutions[i] = Workspace.get().solve(i, engine, puzzles.get(i), findAll);
             } catch (SudokuException e) {
-                System.out.println("Error: " + e.getMessage());
+                System.err.println("Error: " + e.getMessage());
+            } catch (Budget.ExceededException e) {
+                solutions[i] = Budget.EXCEEDED;
             }
         }
         return solutions;
@@ -246,16 +635,50 @@ public class SudokuSolver extends SudokuBoard {
 
     public static void main(String[] args) throws IOException {
         boolean findAll = false;
+        Engine engine = Engine.STANDARD;
+        String file = null;
+        String output = null;
+        boolean machine = false;
         for (int i = 0; i < args.length; ++i) {
             if (FrontEnd.contains(FrontEnd.ALL_OPTS, args[i])) {
                 findAll = true;
+            } else if (FrontEnd.contains(FrontEnd.FILE_OPTS, args[i])) {
+                file = args[++i];
+            } else if (FrontEnd.contains(FrontEnd.OUTPUT_OPTS, args[i])) {
+                output = args[++i];
+            } else if (FrontEnd.contains(FrontEnd.MACHINE_OPTS, args[i])) {
+                machine = true;
+            } else if (FrontEnd.contains(FrontEnd.ENGINE_OPTS, args[i])) {
+                engine = Engine.forName(args[++i]);
+            } else if (FrontEnd.contains(FrontEnd.DLX_OPTS, args[i])) {
+                engine = Engine.DLX;
+            } else if (FrontEnd.contains(FrontEnd.LOGIC_OPTS, args[i])) {
+                TECHNIQUES = Technique.parse(args[++i]);
+            } else if (FrontEnd.contains(FrontEnd.GUESS_OPTS, args[i])) {
+                GUESS_STRATEGY = GuessStrategies.forName(args[++i]);
+            } else if (FrontEnd.contains(FrontEnd.CACHE_OPTS, args[i])) {
+                Workspace.CACHE = new SolutionCache(Integer.parseInt(args[++i]));
+            } else if (FrontEnd.contains(FrontEnd.STORE_OPTS, args[i])) {
+                Workspace.openStore(Paths.get(args[++i]));
+            } else if (FrontEnd.contains(FrontEnd.MILLIS_OPTS, args[i])) {
+                Budget.PER_PUZZLE = Budget.PER_PUZZLE.withMillis(Long.parseLong(args[++i]));
+            } else if (FrontEnd.contains(FrontEnd.NODES_OPTS, args[i])) {
+                Budget.PER_PUZZLE = Budget.PER_PUZZLE.withNodes(Long.parseLong(args[++i]));
             }
         }
-        String[] inputs = Perf.getPuzzles(System.in);
-        SudokuBoard[][] outputs = run(inputs, findAll);
+        List<? extends CharSequence> inputs = file != null
+                ? PuzzleArchive.openPuzzles(Paths.get(file))
+                : Arrays.asList(Perf.getPuzzles(System.in));
+        SudokuBoard[][] outputs = run(inputs, findAll, engine);
+        if (output != null || machine) {
+            ParallelSudokuSolver.outputResults(inputs, outputs, output, machine);
+            return;
+        }
+        SudokuBoard input = new SudokuBoard();
         for (int i = 0; i < outputs.length; ++i) {
             try {
-                ParallelSudokuSolver.printResult(new SudokuBoard(inputs[i]), outputs[i]);
+                input.load(inputs.get(i));
+                ParallelSudokuSolver.printResult(input, outputs[i]);
             } catch (SudokuException e) {
                 System.out.println("Error: " + e.getMessage());
             }
@@ -0,0 +1,226 @@
+package Sudoku;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A solver that searches by mutating a single board in place instead of copying it.
+ *
+ * Every write to the board (each placement and each option removed from a space or unit)
+ * first records the old value on an undo trail. A guess remembers the length of the trail,
+ * and backtracking pops the trail back to that mark. The board, trail, and guess stack are
+ * all allocated up front, so the search itself allocates nothing.
+ */
+public class TrailSudokuSolver extends FlatSudokuSolver {
+
+    /* A placement writes at most 26 entries (value, fill count, its own options, 3 units,
+     * 20 peers), and a single path through the search places at most 81 numbers. */
+    private static final int TRAIL_SIZE = 81 * 26;
+
+    /* Each trail entry is (index into state << 16) | (old value at that index) */
+    private final int[] trail = new int[TRAIL_SIZE];
+    private int trailSize = 0;
+
+    /* The guess stack: the space guessed at each depth, its options in the order the guess
+     * strategy wants them tried, how many of those have been tried, and the trail length
+     * before the guess was made. */
+    private final int[] guessCells = new int[81];
+    private final int[][] guessOrder = new int[81][9];
+    private final int[] nOptions = new int[81];
+    private final int[] nTried = new int[81];
+    private final int[] marks = new int[81];
+
+    public TrailSudokuSolver(String s) throws SudokuBoard.SudokuException {
+        super(s);
+    }
+
+    public TrailSudokuSolver(SudokuBoard board) {
+        super(board);
+    }
+
+    public TrailSudokuSolver(FlatBoard other) {
+        super(other);
+    }
+
+    @Override
+    public void load(CharSequence s) throws SudokuBoard.SudokuException {
+        super.load(s);
+        this.trailSize = 0;
+    }
+
+    @Override
+    public void load(SudokuBoard board) {
+        super.load(board);
+        this.trailSize = 0;
+    }
+
+    /**
+     * Solve the puzzle. This instance will store the solution.
+     * @return true if a solution was found
+     */
+    public boolean solve() {
+        return this.search(1, null) > 0;
+    }
+
+    /**
+     * Find all possible solutions, quitting once its found
+     * {@link Sudoku.SudokuSolver#MAX_SOLNS} solutions.
+     * The board is left in its original state.
+     *
+     * @return A List containing all solutions found.
+     */
+    public List<SudokuBoard> solveAll() {
+        return this.solveAll(SudokuSolver.MAX_SOLNS);
+    }
+
+    /**
+     * Find all possible solutions, quitting once its found `limit` solutions.
+     * The board is left in its original state.
+     *
+     * @return A List containing all solutions found.
+     */
+    public List<SudokuBoard> solveAll(int limit) {
+        LinkedList<SudokuBoard> results = new LinkedList<SudokuBoard>();
+        final int mark = this.trailSize;
+        if (this.search(limit, results) >= limit)
+            this.undo(mark);
+        return results;
+    }
+
+    /**
+     * Count the solutions without keeping any, quitting once `limit` have been found.
+     * The board is left in its original state.
+     *
+     * @return The number of solutions found, at most `limit`.
+     */
+    public int countSolutions(int limit) {
+        final int mark = this.trailSize;
+        int found = this.search(limit, null);
+        if (found >= limit)
+            this.undo(mark);
+        return found;
+    }
+
+    /**
+     * Depth-first search for solutions, adding each to `results` if it is not null.
+     * If the search stops because `limit` solutions were found, the board is left holding
+     * the last solution. Otherwise (including when it goes over budget), the board is rolled
+     * back to where it started.
+     *
+     * @return The number of solutions found.
+     */
+    protected int search(int limit, List<SudokuBoard> results) {
+        final int start = this.trailSize;
+        int found = 0;
+        int depth = 0;
+        if (limit <= 0)
+            return found;
+        Budget.Meter meter = this.startMeter();
+        boolean ok = this.applyLogic();
+        while (true) {
+            if (this.isCancelled()) {
+                this.undo(start);
+                return found;
+            }
+            try {
+                meter.tick();
+            } catch (RuntimeException e) {
+                this.undo(start);
+                throw e;
+            }
+            if (ok && !this.isFilled()) {
+                // applyLogic() succeeded, so every empty space has at least one option
+                int c = this.findMostAttractiveGuess();
+                this.guessCells[depth] = c;
+                this.nOptions[depth] = this.guessStrategy.orderOptions(this, c, this.guessOrder[depth]);
+                this.nTried[depth] = 0;
+                this.marks[depth] = this.trailSize;
+                depth++;
+            } else {
+                if (ok && this.isSolution()) {
+                    found++;
+                    this.foundSolution(results);
+                    if (found >= limit)
+                        return found;
+                }
+                while (depth > 0 && this.nTried[depth - 1] == this.nOptions[depth - 1])
+                    depth--;
+                if (depth == 0) {
+                    this.undo(start);
+                    return found;
+                }
+            }
+
+            // try the next option at the deepest guess
+            int d = depth - 1;
+            this.undo(this.marks[d]);
+            this.place(this.guessCells[d], this.guessOrder[d][this.nTried[d]++]);
+            ok = this.applyLogic();
+        }
+    }
+
+    /* Called by search() with the board holding each solution it finds */
+    protected void foundSolution(List<SudokuBoard> results) {
+        if (results != null)
+            results.add(this.toSudokuBoard());
+    }
+
+    /*
+     * Checked by search() before it expands each node. Subclasses can return true to stop
+     * the search early, in which case the board is rolled back to where the search started.
+     */
+    protected boolean isCancelled() {
+        return false;
+    }
+
+    /** Same as FlatBoard.place, but records every value it changes on the trail **/
+    @Override
+    protected void place(int c, int n) {
+        final short[] s = this.state;
+        if (s[VALUES + c] > SudokuBoard.EMPTY_ENTRY)
+            return;
+        final int bit = 1 << n;
+        this.record(VALUES + c);
+        s[VALUES + c] = (short) n;
+        this.record(FILLED);
+        s[FILLED]++;
+        this.record(OPTIONS + c);
+        s[OPTIONS + c] = 0;
+        for (int u: SudokuBoard.CELL_UNITS[c]) {
+            if ((s[UNITS + u] & bit) != 0) {
+                this.record(UNITS + u);
+                s[UNITS + u] &= (short) ~bit;
+            }
+        }
+        for (int p: SudokuBoard.PEERS[c]) {
+            if ((s[OPTIONS + p] & bit) != 0) {
+                this.record(OPTIONS + p);
+                s[OPTIONS + p] &= (short) ~bit;
+            }
+        }
+    }
+
+    private void record(int index) {
+        this.trail[this.trailSize++] = (index << 16) | this.state[index];
+    }
+
+    /** Restore the board to how it was when the trail had `mark` entries **/
+    private void undo(int mark) {
+        while (this.trailSize > mark) {
+            int e = this.trail[--this.trailSize];
+            this.state[e >>> 16] = (short) e;
+        }
+    }
+
+    public static SudokuBoard[] solve(TrailSudokuSolver solver, boolean findAll) {
+        if (findAll) {
+            List<SudokuBoard> solns = solver.solveAll();
+            if (solns.size() > 0) {
+                return solns.toArray(new SudokuBoard[0]);
+            }
+        } else if (solver.solve()) {
+            return new SudokuBoard[]{solver.toSudokuBoard()};
+        }
+        return null;
+    }
+}
@@ -0,0 +1,411 @@
+package Sudoku;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One solver per engine, kept by each thread and reloaded for every puzzle it solves, so that
+ * a worker reuses the same boards, frontier pools, trails and link arrays from one puzzle to
+ * the next instead of allocating them again.
+ *
+ * The solutions returned are copies, since the solvers are overwritten by the next puzzle.
+ * Threads that only ever run one task (such as virtual threads) get no reuse out of this.
+ *
+ * When STORE is set, every puzzle is first looked up there, and when CACHE is set, then by its
+ * canonical form in the cache. The solutions found for puzzles that miss are added to both.
+ */
+public class Workspace {
+
+    // When true, count the bytes each thread allocates while solving (see bytesPerPuzzle()), if the JVM can
+    public static boolean COUNT_ALLOCATIONS = false;
+
+    // When not null, every puzzle's time in solve() is recorded here, from any thread
+    public static LatencyHistogram LATENCIES = null;
+
+    // When not null, the stats of every search the standard engine runs are added up here
+    public static SolverStats STATS = null;
+
+    // When not null, the cache that every thread's workspace answers puzzles from
+    public static SolutionCache CACHE = null;
+
+    // When not null, the store on disk that every thread's workspace answers puzzles from
+    public static SolutionStore STORE = null;
+
+    /** Open the store at `base` as STORE, and close it when the program exits **/
+    public static void openStore(Path base) throws IOException {
+        final SolutionStore store = SolutionStore.open(base);
+        STORE = store;
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    // The JVM's count of the bytes each thread allocates, or null if it doesn't keep one
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private static final LongAdder allocatedBytes = new LongAdder();
+    private static final LongAdder countedPuzzles = new LongAdder();
+
+    private static final ThreadLocal<Workspace> CURRENT = new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+    };
+
+    private SudokuSolver standard;
+    private FlatSudokuSolver flat;
+    private TrailSudokuSolver trail;
+    private DancingLinksSolver dlx;
+    private CanonicalForm.Search canonicalizer;
+
+    // Whether the last puzzle was searched by the standard solver, so that its stats are that puzzle's
+    private boolean searched;
+
+    // The last puzzle's index in its batch, and where its solutions came from, for its events
+    private long index = -1;
+    private String source;
+
+    /** This thread's workspace **/
+    public static Workspace get() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Same as engine.solve(puzzle, findAll), but on this workspace's solver for the engine.
+     * The fork/join engine searches on its pool's threads, so only its puzzle is loaded here.
+     */
+    public SudokuBoard[] solve(Engine engine, CharSequence puzzle, boolean findAll) throws SudokuBoard.SudokuException {
+        return this.solve(-1, engine, puzzle, findAll);
+    }
+
+    /** Same as above, for the puzzle at `index` in its batch (see SolverEvents) **/
+    public SudokuBoard[] solve(long index, Engine engine, CharSequence puzzle, boolean findAll)
+            throws SudokuBoard.SudokuException {
+        return this.solve(index, engine, puzzle, TEXT, findAll);
+    }
+
+    /** Same as above, for a puzzle that has already been parsed **/
+    public SudokuBoard[] solve(Engine engine, SudokuBoard puzzle, boolean findAll) {
+        return this.solve(-1, engine, puzzle, findAll);
+    }
+
+    /** Same as above, for the puzzle at `index` in its batch **/
+    public SudokuBoard[] solve(long index, Engine engine, SudokuBoard puzzle, boolean findAll) {
+        try {
+            return this.solve(index, engine, puzzle, BOARD, findAll);
+        } catch (SudokuBoard.SudokuException e) {
+            // a board always loads
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+     * A form puzzles are given in: how to key one for the store, find its canonical form for
+     * the cache, and load it into this workspace's solver for an engine
+     */
+    private abstract static class Input<P> {
+        abstract byte[] key(P puzzle);
+
+        abstract CanonicalForm canonicalForm(CanonicalForm.Search canonicalizer, P puzzle);
+
+        abstract void load(Workspace workspace, Engine engine, P puzzle) throws SudokuBoard.SudokuException;
+    }
+
+    private static final Input<CharSequence> TEXT = new Input<CharSequence>() {
+        byte[] key(CharSequence puzzle) {
+            return SolutionStore.key(puzzle);
+        }
+
+        CanonicalForm canonicalForm(CanonicalForm.Search canonicalizer, CharSequence puzzle) {
+            return canonicalizer.find(puzzle);
+        }
+
+        void load(Workspace workspace, Engine engine, CharSequence puzzle) throws SudokuBoard.SudokuException {
+            switch (engine) {
+                case STANDARD:
+                    workspace.standardSolver().load(puzzle);
+                    break;
+                case TRAIL:
+                    workspace.trailSolver().load(puzzle);
+                    break;
+                case DLX:
+                    workspace.dlxSolver().load(puzzle);
+                    break;
+                default:
+                    // FLAT, and FORKJOIN, which only reads the board it is given
+                    workspace.flatSolver().load(puzzle);
+                    break;
+            }
+        }
+    };
+
+    private static final Input<SudokuBoard> BOARD = new Input<SudokuBoard>() {
+        byte[] key(SudokuBoard puzzle) {
+            return SolutionStore.key(puzzle);
+        }
+
+        CanonicalForm canonicalForm(CanonicalForm.Search canonicalizer, SudokuBoard puzzle) {
+            return canonicalizer.find(puzzle);
+        }
+
+        void load(Workspace workspace, Engine engine, SudokuBoard puzzle) {
+            switch (engine) {
+                case STANDARD:
+                    workspace.standardSolver().copyFrom(puzzle);
+                    break;
+                case TRAIL:
+                    workspace.trailSolver().load(puzzle);
+                    break;
+                case DLX:
+                    workspace.dlxSolver().load(puzzle);
+                    break;
+                default:
+                    // FLAT and FORKJOIN, as above
+                    workspace.flatSolver().load(puzzle);
+                    break;
+            }
+        }
+    };
+
+    /* Answer a puzzle given in any form, recording its latency, allocations and Solve event */
+    private <P> SudokuBoard[] solve(long index, Engine engine, P puzzle, Input<P> input, boolean findAll)
+            throws SudokuBoard.SudokuException {
+        long start = allocatedBytes();
+        long began = startTiming();
+        SolverEvents.Solve event = this.beginSolve(index);
+        SudokuBoard[] solutions = null;
+        String outcome = "failed";
+        try {
+            solutions = this.lookUpOrSolve(engine, puzzle, input, findAll);
+            outcome = SolverEvents.outcome(solutions);
+            return solutions;
+        } catch (SudokuBoard.SudokuException e) {
+            outcome = "invalid";
+            throw e;
+        } catch (Budget.ExceededException e) {
+            outcome = "over-budget";
+            throw e;
+        } finally {
+            recordLatency(began);
+            this.endSolve(event, engine, findAll, outcome, solutions);
+            countAllocations(start);
+        }
+    }
+
+    /* Answer the puzzle from the store or the cache if they have it, and otherwise solve it and keep the solutions */
+    private <P> SudokuBoard[] lookUpOrSolve(Engine engine, P puzzle, Input<P> input, boolean findAll)
+            throws SudokuBoard.SudokuException {
+        SolutionStore store = STORE;
+        SolutionCache cache = CACHE;
+        byte[] key = store != null ? input.key(puzzle) : null;
+        SudokuBoard[] solutions = key != null ? store.get(key, findAll) : SolutionCache.MISS;
+        if (solutions != SolutionCache.MISS) {
+            this.source = "store";
+            return solutions;
+        }
+        this.source = "cache";
+        CanonicalForm form = cache != null ? input.canonicalForm(this.canonicalizer(), puzzle) : null;
+        solutions = form != null ? cache.get(form, findAll) : SolutionCache.MISS;
+        if (solutions == SolutionCache.MISS) {
+            this.source = "search";
+            SolverEvents.PuzzleParsed parsed = new SolverEvents.PuzzleParsed();
+            parsed.begin();
+            input.load(this, engine, puzzle);
+            parsed.index = this.index;
+            parsed.commit();
+            solutions = this.solveLoaded(engine, findAll);
+            if (form != null)
+                cache.put(form, findAll, solutions);
+        }
+        if (key != null)
+            store.put(key, findAll, solutions);
+        return solutions;
+    }
+
+    /* Solve the puzzle just loaded into the engine's solver */
+    private SudokuBoard[] solveLoaded(Engine engine, boolean findAll) {
+        switch (engine) {
+            case STANDARD:
+                return this.solveStandard(findAll);
+            case FLAT:
+                return FlatSudokuSolver.solve(this.flat, findAll);
+            case TRAIL:
+                return TrailSudokuSolver.solve(this.trail, findAll);
+            case DLX:
+                return this.solveDLX(findAll);
+            default:
+                return new ForkJoinSudokuSolver().solve(this.flat, findAll);
+        }
+    }
+
+    /* Start the event for a puzzle, and forget the last one */
+    private SolverEvents.Solve beginSolve(long index) {
+        this.index = index;
+        this.searched = false;
+        this.source = null;
+        SolverEvents.Solve event = new SolverEvents.Solve();
+        event.begin();
+        return event;
+    }
+
+    private void endSolve(SolverEvents.Solve event, Engine engine, boolean findAll, String outcome,
+                          SudokuBoard[] solutions) {
+        event.end();
+        if (!event.shouldCommit())
+            return;
+        SolverStats stats = this.getStats();
+        event.index = this.index;
+        event.engine = engine.name().toLowerCase();
+        event.findAll = findAll;
+        event.source = this.source;
+        event.outcome = outcome;
+        event.solutions = solutions == null || solutions == Budget.EXCEEDED ? 0 : solutions.length;
+        event.nodes = stats != null ? stats.getNodes() : -1;
+        event.commit();
+    }
+
+    /* SudokuSolver.solve() and DancingLinksSolver.solve() return the solver itself, so copy it */
+    private SudokuBoard[] solveStandard(boolean findAll) {
+        this.searched = true;
+        this.standard.puzzleIndex = this.index;
+        try {
+            SudokuBoard[] solns = SudokuSolver.solve(this.standard, findAll);
+            if (solns != null && solns[0] == this.standard)
+                solns[0] = new SudokuBoard(this.standard);
+            return solns;
+        } finally {
+            SolverStats total = STATS;
+            SolverStats stats = this.standard.getStats();
+            if (total != null && stats != null)
+                total.add(stats);
+        }
+    }
+
+    /**
+     * What the search for the last puzzle solved here did, if it was searched by the standard
+     * engine (and not answered from the store or cache); otherwise null. The stats are
+     * overwritten by the next puzzle, so copy them to keep them.
+     */
+    public SolverStats getStats() {
+        return this.searched ? this.standard.getStats() : null;
+    }
+
+    private SudokuBoard[] solveDLX(boolean findAll) {
+        SudokuBoard[] solns = DancingLinksSolver.solve(this.dlx, findAll);
+        if (solns != null && solns[0] == this.dlx)
+            solns[0] = new SudokuBoard(this.dlx);
+        return solns;
+    }
+
+    /*
+     * The solvers pick up the current settings (SudokuSolver.TECHNIQUES and GUESS_STRATEGY,
+     * and Budget.PER_PUZZLE) whenever they are used, as a new solver would. The guess strategy
+     * is the one for the puzzle's index, so a seeded random strategy repeats its guesses.
+     */
+    private SudokuSolver standardSolver() {
+        if (this.standard == null)
+            this.standard = new SudokuSolver(new SudokuBoard());
+        if (!this.standard.techniques.equals(SudokuSolver.TECHNIQUES))
+            this.standard.setTechniques(SudokuSolver.TECHNIQUES);
+        this.standard.setGuessStrategy(SudokuSolver.GUESS_STRATEGY.forPuzzle(this.index));
+        this.standard.setBudget(Budget.PER_PUZZLE);
+        return this.standard;
+    }
+
+    private FlatSudokuSolver flatSolver() {
+        if (this.flat == null)
+            this.flat = new FlatSudokuSolver(new FlatBoard());
+        this.flat.setGuessStrategy(SudokuSolver.GUESS_STRATEGY.forPuzzle(this.index));
+        this.flat.setBudget(Budget.PER_PUZZLE);
+        return this.flat;
+    }
+
+    private TrailSudokuSolver trailSolver() {
+        if (this.trail == null)
+            this.trail = new TrailSudokuSolver(new FlatBoard());
+        this.trail.setGuessStrategy(SudokuSolver.GUESS_STRATEGY.forPuzzle(this.index));
+        this.trail.setBudget(Budget.PER_PUZZLE);
+        return this.trail;
+    }
+
+    private CanonicalForm.Search canonicalizer() {
+        if (this.canonicalizer == null)
+            this.canonicalizer = new CanonicalForm.Search();
+        return this.canonicalizer;
+    }
+
+    private DancingLinksSolver dlxSolver() {
+        if (this.dlx == null)
+            this.dlx = new DancingLinksSolver(new SudokuBoard());
+        this.dlx.setBudget(Budget.PER_PUZZLE);
+        return this.dlx;
+    }
+
+    /* The time now, or -1 if latencies aren't being recorded */
+    private static long startTiming() {
+        return LATENCIES != null ? System.nanoTime() : -1;
+    }
+
+    private static void recordLatency(long began) {
+        LatencyHistogram latencies = LATENCIES;
+        if (began >= 0 && latencies != null)
+            latencies.record(System.nanoTime() - began);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return null;
+        com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+        if (!counter.isThreadAllocatedMemorySupported() || !counter.isThreadAllocatedMemoryEnabled())
+            return null;
+        return counter;
+    }
+
+    /*
+     * The bytes allocated so far by this thread, or -1 if they aren't being (or can't be) counted.
+     * It is read before the puzzle's latency starts and after it ends, so it isn't part of it.
+     */
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean counter = THREADS;
+        if (!COUNT_ALLOCATIONS || counter == null)
+            return -1;
+        return counter.getCurrentThreadAllocatedBytes();
+    }
+
+    private static void countAllocations(long start) {
+        if (start < 0)
+            return;
+        long end = allocatedBytes();
+        if (end < 0)
+            return;
+        allocatedBytes.add(end - start);
+        countedPuzzles.increment();
+    }
+
+    /**
+     * The average bytes allocated per puzzle solved since the last reset, or -1 if none were
+     * counted. Only the solving thread's allocations are counted, so this misses the work the
+     * fork/join engine does on its pool's threads.
+     */
+    public static long bytesPerPuzzle() {
+        long puzzles = countedPuzzles.sum();
+        return puzzles == 0 ? -1 : allocatedBytes.sum() / puzzles;
+    }
+
+    public static void resetAllocationCount() {
+        allocatedBytes.reset();
+        countedPuzzles.reset();
+    }
+}
@@ -169,4 +169,51 @@ public class IntSetTest {
         set.add(3);
         assertEquals(set.getFirst(), 3);
     }
+
+    @Test
+    public void testNext() {
+        IntSet set = new IntSet();
+        assertEquals(-1, set.getFirst());
+
+        set.add(2);
+        set.add(3);
+        set.add(9);
+        assertEquals(3, set.next(2));
+        assertEquals(9, set.next(3));
+        assertEquals(9, set.next(5));
+        assertEquals(-1, set.next(9));
+        assertEquals(2, set.next(0));
+
+        int[] values = new int[set.size()];
+        int k = 0;
+        for (int n = set.getFirst(); n > 0; n = set.next(n))
+            values[k++] = n;
+        assertEquals(Arrays.toString(new int[]{2, 3, 9}), Arrays.toString(values));
+    }
+
+    @Test
+    public void testBulkOperations() {
+        IntSet a = new IntSet();
+        IntSet b = new IntSet();
+        a.add(1);
+        a.add(4);
+        a.add(7);
+        b.add(4);
+        b.add(5);
+
+        IntSet c = new IntSet();
+        c.copyFrom(a);
+        c.intersect(b);
+        assertEquals(Arrays.toString(new int[]{4}), Arrays.toString(c.toArray()));
+
+        c.copyFrom(a);
+        c.union(b);
+        assertEquals(Arrays.toString(new int[]{1, 4, 5, 7}), Arrays.toString(c.toArray()));
+        assertEquals(4, c.size());
+
+        c.copyFrom(a);
+        c.subtract(b);
+        assertEquals(Arrays.toString(new int[]{1, 7}), Arrays.toString(c.toArray()));
+        assertEquals(a.mask() & ~b.mask(), c.mask());
+    }
 }
@@ -1,12 +1,51 @@
+import Sudoku.Budget;
+import Sudoku.CanonicalForm;
+import Sudoku.DancingLinksSolver;
+import Sudoku.Engine;
+import Sudoku.ExecutorKind;
+import Sudoku.GuessStrategies;
+import Sudoku.GuessStrategy;
+import Sudoku.LatencyHistogram;
+import Sudoku.FlatBoard;
+import Sudoku.FlatSudokuSolver;
+import Sudoku.ForkJoinSudokuSolver;
 import Sudoku.ParallelSudokuSolver;
+import Sudoku.Perf;
+import Sudoku.PuzzleArchive;
+import Sudoku.PuzzleFile;
+import Sudoku.ResultWriter;
+import Sudoku.SolutionCache;
+import Sudoku.SolutionStore;
+import Sudoku.SolverStats;
 import Sudoku.SudokuSolver;
+import Sudoku.TrailSudokuSolver;
+import Sudoku.Workspace;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import Sudoku.SudokuBoard;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import static org.junit.Assert.*;
 
@@ -273,6 +312,22 @@ public class SudokuTest {
         }
     }
 
+    @Test
+    public void Solver_verifyOptionsMatchesIncremental() {
+        SudokuBoard.VERIFY_OPTIONS = true;
+        SudokuBoard[][] expected;
+        try {
+            expected = SudokuSolver.run(hardPuzzles, false);
+        } finally {
+            SudokuBoard.VERIFY_OPTIONS = false;
+        }
+        SudokuBoard[][] outputs = SudokuSolver.run(hardPuzzles, false);
+        for (int i = 0; i < outputs.length; ++i) {
+            assertNotNull(outputs[i]);
+            assertEquals(expected[i][0].rawString(), outputs[i][0].rawString());
+        }
+    }
+
     @Test
     public void Solver_solveAllA() {
         try {
@@ -306,4 +361,1129 @@ public class SudokuTest {
             fail(e.toString());
         }
     }
+
+    @Test
+    public void FlatSolver_inputs() {
+        String[] inputs = {validBoardString, inputA, inputB, inputC, inputD, inputE};
+        String[] outputs = {solvedBoardString, outputA, outputB, outputC, outputD, outputE};
+        for (int i = 0; i < inputs.length; ++i) {
+            try {
+                FlatSudokuSolver solver = new FlatSudokuSolver(inputs[i]);
+                assertTrue(solver.solve());
+                assertEquals(outputs[i], solver.toSudokuBoard().rawString());
+            } catch (SudokuBoard.SudokuException e) {
+                fail(e.toString());
+            }
+        }
+    }
+
+    @Test
+    public void FlatSolver_hardPuzzles() {
+        SudokuBoard[][] outputs = ParallelSudokuSolver.run(hardPuzzles, 4, false, Engine.FLAT);
+        for (SudokuBoard[] solns: outputs) {
+            assertNotNull(solns);
+            assertEquals(1, solns.length);
+            assertTrue(solns[0].isSolution());
+        }
+    }
+
+    @Test
+    public void FlatSolver_solveAllMatchesStandard() {
+        for (String puzzle: new String[]{multipleA, multipleB}) {
+            try {
+                List<SudokuBoard> expected = new SudokuSolver(puzzle).solveAll();
+                List<SudokuBoard> solns = new FlatSudokuSolver(puzzle).solveAll();
+                assertEquals(expected.size(), solns.size());
+                for (int i = 0; i < solns.size(); ++i) {
+                    assertTrue(solns.get(i).isSolution());
+                    for (int j = i + 1; j < solns.size(); ++j) {
+                        assertFalse(solns.get(i).equals(solns.get(j)));
+                    }
+                }
+            } catch (SudokuBoard.SudokuException e) {
+                fail(e.toString());
+            }
+        }
+    }
+
+    @Test
+    public void TrailSolver_hardPuzzles() {
+        SudokuBoard[][] outputs = ParallelSudokuSolver.run(hardPuzzles, 4, false, Engine.TRAIL);
+        for (SudokuBoard[] solns: outputs) {
+            assertNotNull(solns);
+            assertEquals(1, solns.length);
+            assertTrue(solns[0].isSolution());
+        }
+    }
+
+    @Test
+    public void TrailSolver_solveAllRestoresBoard() {
+        for (String puzzle: new String[]{multipleA, multipleB}) {
+            try {
+                List<SudokuBoard> expected = new SudokuSolver(puzzle).solveAll();
+                TrailSudokuSolver solver = new TrailSudokuSolver(puzzle);
+                List<SudokuBoard> solns = solver.solveAll();
+                assertEquals(expected.size(), solns.size());
+                for (int i = 0; i < solns.size(); ++i) {
+                    assertTrue(solns.get(i).isSolution());
+                    for (int j = i + 1; j < solns.size(); ++j) {
+                        assertFalse(solns.get(i).equals(solns.get(j)));
+                    }
+                }
+                assertEquals(new SudokuBoard(puzzle).rawString(), solver.toSudokuBoard().rawString());
+            } catch (SudokuBoard.SudokuException e) {
+                fail(e.toString());
+            }
+        }
+    }
+
+    @Test
+    public void DancingLinks_inputs() {
+        String[] inputs = {validBoardString, solvedBoardString, inputA, inputB, inputC, inputD, inputE};
+        String[] outputs = {solvedBoardString, solvedBoardString, outputA, outputB, outputC, outputD, outputE};
+        for (int i = 0; i < inputs.length; ++i) {
+            try {
+                DancingLinksSolver solver = new DancingLinksSolver(inputs[i]);
+                assertTrue(solver.solve());
+                assertEquals(outputs[i], solver.rawString());
+            } catch (SudokuBoard.SudokuException e) {
+                fail(e.toString());
+            }
+        }
+    }
+
+    @Test
+    public void DancingLinks_invalidBoard() {
+        try {
+            assertFalse(new DancingLinksSolver(invalidRowString).solve());
+        } catch (SudokuBoard.SudokuException e) {
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void DancingLinks_hardPuzzles() {
+        SudokuBoard[][] outputs = ParallelSudokuSolver.run(hardPuzzles, 4, false, Engine.DLX);
+        for (SudokuBoard[] solns: outputs) {
+            assertNotNull(solns);
+            assertEquals(1, solns.length);
+            assertTrue(solns[0].isSolution());
+        }
+    }
+
+    @Test
+    public void DancingLinks_solveAll() {
+        for (String puzzle: new String[]{multipleA, multipleB}) {
+            try {
+                List<SudokuBoard> expected = new SudokuSolver(puzzle).solveAll();
+                List<SudokuBoard> solns = new DancingLinksSolver(puzzle).solveAll();
+                assertEquals(expected.size(), solns.size());
+                for (int i = 0; i < solns.size(); ++i) {
+                    assertTrue(solns.get(i).isSolution());
+                    for (int j = i + 1; j < solns.size(); ++j) {
+                        assertFalse(solns.get(i).equals(solns.get(j)));
+                    }
+                }
+            } catch (SudokuBoard.SudokuException e) {
+                fail(e.toString());
+            }
+        }
+    }
+
+    @Test
+    public void Solver_techniquesHardPuzzles() {
+        for (SudokuSolver.Technique t: SudokuSolver.Technique.values()) {
+            for (int i = 0; i < hardPuzzles.length; i += 5) {
+                try {
+                    SudokuSolver solver = new SudokuSolver(hardPuzzles[i]);
+                    solver.setTechniques(EnumSet.of(t));
+                    assertTrue(solver.solve());
+                    assertTrue(solver.isSolution());
+                } catch (SudokuBoard.SudokuException e) {
+                    fail(e.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void Solver_allTechniquesSolveAll() {
+        SudokuSolver.TECHNIQUES = SudokuSolver.Technique.parse("all");
+        try {
+            SudokuBoard[][] outputs = SudokuSolver.run(hardPuzzles, false);
+            for (SudokuBoard[] solns: outputs) {
+                assertNotNull(solns);
+                assertTrue(solns[0].isSolution());
+            }
+            for (String puzzle: new String[]{multipleA, multipleB}) {
+                List<SudokuBoard> solns = new SudokuSolver(puzzle).solveAll();
+                assertEquals(new DancingLinksSolver(puzzle).solveAll().size(), solns.size());
+                for (int i = 0; i < solns.size(); ++i) {
+                    assertTrue(solns.get(i).isSolution());
+                    for (int j = i + 1; j < solns.size(); ++j) {
+                        assertFalse(solns.get(i).equals(solns.get(j)));
+                    }
+                }
+            }
+        } catch (SudokuBoard.SudokuException e) {
+            fail(e.toString());
+        } finally {
+            SudokuSolver.TECHNIQUES = EnumSet.noneOf(SudokuSolver.Technique.class);
+        }
+    }
+
+    @Test
+    public void GuessStrategies_allEngines() {
+        String[] names = {"mrv", "degree", "frequency", "random:42"};
+        try {
+            for (String name: names) {
+                SudokuSolver.GUESS_STRATEGY = GuessStrategies.forName(name);
+                for (Engine engine: new Engine[]{Engine.STANDARD, Engine.FLAT, Engine.TRAIL}) {
+                    SudokuBoard[][] outputs = SudokuSolver.run(hardPuzzles, false, engine);
+                    for (SudokuBoard[] solns: outputs) {
+                        assertNotNull(solns);
+                        assertTrue(solns[0].isSolution());
+                    }
+                    SudokuBoard[] solns = engine.solve(multipleA, true);
+                    assertEquals(8, solns.length);
+                }
+            }
+        } catch (SudokuBoard.SudokuException e) {
+            fail(e.toString());
+        } finally {
+            SudokuSolver.GUESS_STRATEGY = GuessStrategies.forName("mrv");
+        }
+    }
+
+    @Test
+    public void GuessStrategies_seededPerPuzzle() {
+        GuessStrategy mrv = GuessStrategies.forName("mrv");
+        assertSame(mrv, mrv.forPuzzle(3));
+        GuessStrategy random = GuessStrategies.forName("random:42");
+        GuessStrategy a = random.forPuzzle(3);
+        GuessStrategy b = random.forPuzzle(3);
+        assertNotSame(a, b);
+        try {
+            SudokuBoard board = new SudokuBoard(validBoardString);
+            int[] orderA = new int[9];
+            int[] orderB = new int[9];
+            for (int k = 0; k < 20; ++k) {
+                int c = a.selectSpace(board);
+                assertEquals(c, b.selectSpace(board));
+                assertEquals(a.orderOptions(board, c, orderA), b.orderOptions(board, c, orderB));
+                assertArrayEquals(orderA, orderB);
+            }
+        } catch (SudokuBoard.SudokuException e) {
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void CountSolutions_allEngines() {
+        try {
+            for (Engine engine: Engine.values()) {
+                assertEquals(8, engine.countSolutions(multipleA, 100));
+                assertEquals(5, engine.countSolutions(multipleA, 5));
+                assertEquals(30, engine.countSolutions(multipleB, 30));
+                assertEquals(0, engine.countSolutions(invalidRowString, 2));
+                assertFalse(engine.isUnique(multipleA));
+                assertTrue(engine.isUnique(inputC));
+                assertTrue(engine.isUnique(solvedBoardString));
+            }
+        } catch (SudokuBoard.SudokuException e) {
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void CountSolutions_perCallLimit() {
+        try {
+            assertEquals(3, new SudokuSolver(multipleA).solveAll(3).size());
+            assertEquals(3, new FlatSudokuSolver(multipleA).solveAll(3).size());
+            assertEquals(3, new DancingLinksSolver(multipleA).solveAll(3).size());
+            TrailSudokuSolver trail = new TrailSudokuSolver(multipleA);
+            assertEquals(3, trail.solveAll(3).size());
+            assertEquals(8, trail.countSolutions(20));
+            assertEquals(8, trail.countSolutions(8));
+            assertEquals(new SudokuBoard(multipleA).rawString(), trail.toSudokuBoard().rawString());
+        } catch (SudokuBoard.SudokuException e) {
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void ForkJoin_hardPuzzles() {
+        SudokuBoard[][] outputs = SudokuSolver.run(hardPuzzles, false, Engine.FORKJOIN);
+        for (SudokuBoard[] solns: outputs) {
+            assertNotNull(solns);
+            assertEquals(1, solns.length);
+            assertTrue(solns[0].isSolution());
+        }
+    }
+
+    @Test
+    public void ForkJoin_solveAll() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int cutoff = 0; cutoff <= 3; ++cutoff) {
+                ForkJoinSudokuSolver solver = new ForkJoinSudokuSolver(pool, cutoff);
+                List<SudokuBoard> solns = solver.solveAll(new FlatBoard(multipleA), 100);
+                assertEquals(8, solns.size());
+                for (int i = 0; i < solns.size(); ++i) {
+                    assertTrue(solns.get(i).isSolution());
+                    for (int j = i + 1; j < solns.size(); ++j) {
+                        assertFalse(solns.get(i).equals(solns.get(j)));
+                    }
+                }
+                assertEquals(5, solver.solveAll(new FlatBoard(multipleA), 5).size());
+                assertEquals(20, solver.countSolutions(new FlatBoard(multipleB), 20));
+                assertEquals(0, solver.countSolutions(new FlatBoard(invalidRowString), 2));
+            }
+        } catch (SudokuBoard.SudokuException e) {
+            fail(e.toString());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void Streaming_matchesBatch() throws IOException {
+        String[] puzzles = {validBoardString, invalidRowString, "too short", multipleA, inputA, inputB};
+        StringBuilder input = new StringBuilder();
+        for (int repeat = 0; repeat < 5; ++repeat) {
+            for (String puzzle: puzzles)
+                input.append(puzzle).append("\n\n");
+        }
+        input.append(hardPuzzles[0]);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(expected);
+        String[] lines = input.toString().split("\n");
+        for (String line: lines) {
+            if (line.isEmpty())
+                continue;
+            try {
+                SudokuBoard board = new SudokuBoard(line);
+                ParallelSudokuSolver.printResult(out, board, Engine.TRAIL.solve(line, true));
+            } catch (SudokuBoard.SudokuException e) {
+                out.println(e.getMessage());
+            }
+        }
+        out.flush();
+
+        // a window smaller than the input makes the reader wait on the writer
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        ParallelSudokuSolver.runStreaming(new ByteArrayInputStream(input.toString().getBytes()),
+                new PrintStream(actual), 3, true, Engine.TRAIL, 4);
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test(timeout = 60000)
+    public void Streaming_reportsFailures() throws IOException {
+        SudokuSolver.GUESS_STRATEGY = new GuessStrategy() {
+            public int selectSpace(GuessStrategy.Grid grid) {
+                throw new Error("guessing broke");
+            }
+
+            public int orderOptions(GuessStrategy.Grid grid, int c, int[] order) {
+                throw new Error("guessing broke");
+            }
+
+            public GuessStrategy forPuzzle(long index) {
+                return this;
+            }
+        };
+        try {
+            // one worker, so a failure that ended it would leave the second puzzle waiting
+            String input = hardPuzzles[0] + "\n" + hardPuzzles[1] + "\n";
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            ParallelSudokuSolver.runStreaming(new ByteArrayInputStream(input.getBytes()), new PrintStream(text),
+                    1, false, Engine.STANDARD, 4);
+            assertEquals(2, text.toString().split("Failed: java.lang.Error: guessing broke").length - 1);
+
+            ByteArrayOutputStream machine = new ByteArrayOutputStream();
+            ParallelSudokuSolver.runStreaming(new ByteArrayInputStream(input.getBytes()), new ResultWriter(machine),
+                    1, false, Engine.STANDARD, 4, ExecutorKind.PLATFORM);
+            String[] lines = machine.toString().split("\n");
+            assertEquals(2, lines.length);
+            for (String line: lines)
+                assertTrue(line, line.endsWith("\tfailed\t0"));
+        } finally {
+            SudokuSolver.GUESS_STRATEGY = GuessStrategies.forName("mrv");
+        }
+    }
+
+    @Test
+    public void Executors_allKinds() throws IOException {
+        for (ExecutorKind executor: ExecutorKind.values()) {
+            SudokuBoard[][] outputs = ParallelSudokuSolver.run(hardPuzzles, 2, false, Engine.TRAIL, executor);
+            assertEquals(hardPuzzles.length, outputs.length);
+            for (SudokuBoard[] solns: outputs) {
+                assertNotNull(solns);
+                assertTrue(solns[0].isSolution());
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ParallelSudokuSolver.runStreaming(new ByteArrayInputStream((inputA + "\n" + inputB).getBytes()),
+                    new PrintStream(out), 2, false, Engine.TRAIL, 4, executor);
+            assertEquals(2, out.toString().split("Found 1 solution").length - 1);
+        }
+    }
+
+    @Test
+    public void Batched_matchesPerPuzzle() {
+        String[] puzzles = new String[300];
+        String[] kinds = {inputA, invalidRowString, "too short", inputB, hardPuzzles[1], validBoardString};
+        for (int i = 0; i < puzzles.length; ++i)
+            puzzles[i] = kinds[i % kinds.length];
+        for (long chunkNanos: new long[]{1, 1000000, Long.MAX_VALUE}) {
+            SudokuBoard[][] outputs = ParallelSudokuSolver.runBatched(puzzles, 3, false, Engine.FLAT,
+                    ExecutorKind.PLATFORM, chunkNanos);
+            assertEquals(puzzles.length, outputs.length);
+            for (int i = 0; i < puzzles.length; ++i) {
+                if (i % kinds.length == 1 || i % kinds.length == 2) {
+                    assertNull(outputs[i]);
+                } else {
+                    assertEquals(1, outputs[i].length);
+                    assertTrue(outputs[i][0].isSolution());
+                }
+            }
+            assertEquals(outputA, outputs[0][0].rawString());
+            assertEquals(outputB, outputs[3][0].rawString());
+        }
+    }
+
+    static String emptyBoardString = ".................................................................................";
+
+    @Test
+    public void Budget_allEngines() throws SudokuBoard.SudokuException {
+        for (Budget budget: new Budget[]{new Budget(0, 1000), Budget.UNLIMITED.withMillis(50)}) {
+            Budget.PER_PUZZLE = budget;
+            try {
+                for (Engine engine: Engine.values()) {
+                    try {
+                        engine.countSolutions(emptyBoardString, Integer.MAX_VALUE);
+                        fail(engine + " went over " + budget.getMaxNodes() + " nodes / " + budget.getMaxNanos() + " ns");
+                    } catch (Budget.ExceededException e) {
+                        // expected
+                    }
+                    // puzzles that fit in the budget are still solved
+                    assertEquals(1, engine.countSolutions(inputA, 2));
+                }
+            } finally {
+                Budget.PER_PUZZLE = Budget.UNLIMITED;
+            }
+        }
+    }
+
+    @Test
+    public void Budget_resultState() throws SudokuBoard.SudokuException {
+        Budget.PER_PUZZLE = new Budget(0, 1);
+        try {
+            String[] puzzles = {hardPuzzles[0], solvedBoardString, invalidRowString};
+            SudokuBoard[][] outputs = SudokuSolver.run(puzzles, false, Engine.STANDARD);
+            assertSame(Budget.EXCEEDED, outputs[0]);
+            assertTrue(outputs[1][0].isSolution());
+            assertNull(outputs[2]);
+            assertArrayEquals(new int[]{0, 1, 1}, Perf.verify(outputs));
+
+            outputs = ParallelSudokuSolver.run(puzzles, 2, false, Engine.TRAIL);
+            assertSame(Budget.EXCEEDED, outputs[0]);
+            assertTrue(outputs[1][0].isSolution());
+
+            // a trail solver that gives up is rolled back to the puzzle
+            TrailSudokuSolver trail = new TrailSudokuSolver(hardPuzzles[0]);
+            try {
+                trail.solve();
+                fail("over budget");
+            } catch (Budget.ExceededException e) {
+                assertEquals(new SudokuBoard(hardPuzzles[0]).rawString(), trail.toSudokuBoard().rawString());
+            }
+        } finally {
+            Budget.PER_PUZZLE = Budget.UNLIMITED;
+        }
+    }
+
+    @Test
+    public void Budget_cancelInterruptsSearch() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(Engine.values().length);
+        try {
+            Future<?>[] futures = new Future<?>[Engine.values().length];
+            for (final Engine engine: Engine.values()) {
+                futures[engine.ordinal()] = pool.submit(new Callable<Integer>() {
+                    public Integer call() throws SudokuBoard.SudokuException {
+                        return engine.countSolutions(emptyBoardString, Integer.MAX_VALUE);
+                    }
+                });
+            }
+            Thread.sleep(100);
+            for (Future<?> future: futures)
+                assertTrue(future.cancel(true));
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void Interrupted_runsThrowCancellation() {
+        ParallelSudokuSolver.ResultHandler ignore = new ParallelSudokuSolver.ResultHandler() {
+            public void handle(int index, SudokuBoard[] solutions) {
+            }
+        };
+        try {
+            for (int chunkMicros: new int[]{0, 1000}) {
+                ParallelSudokuSolver.CHUNK_MICROS = chunkMicros;
+                Thread.currentThread().interrupt();
+                try {
+                    ParallelSudokuSolver.run(hardPuzzles, 2, false, Engine.TRAIL);
+                    fail("an interrupted run returned");
+                } catch (CancellationException e) {
+                    assertTrue(Thread.interrupted());
+                }
+            }
+            Thread.currentThread().interrupt();
+            try {
+                ParallelSudokuSolver.runInOrder(hardPuzzles, 2, false, Engine.TRAIL, ExecutorKind.PLATFORM, ignore, 4);
+                fail("an interrupted run returned");
+            } catch (CancellationException e) {
+                assertTrue(Thread.interrupted());
+            }
+        } finally {
+            ParallelSudokuSolver.CHUNK_MICROS = 1000;
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void Handler_completionAndInputOrder() {
+        final String[] puzzles = {hardPuzzles[0], inputA, invalidRowString, inputB, hardPuzzles[1], inputC, inputD};
+        final SudokuBoard[][] expected = SudokuSolver.run(puzzles, false, Engine.TRAIL);
+
+        final boolean[] seen = new boolean[puzzles.length];
+        ParallelSudokuSolver.runAsCompleted(puzzles, 3, false, Engine.TRAIL, ExecutorKind.PLATFORM,
+                new ParallelSudokuSolver.ResultHandler() {
+                    public void handle(int index, SudokuBoard[] solutions) {
+                        assertFalse(seen[index]);
+                        seen[index] = true;
+                        assertSolutions(expected[index], solutions);
+                    }
+                });
+        for (boolean b: seen)
+            assertTrue(b);
+
+        for (int window: new int[]{1, 3, 100}) {
+            final int[] next = {0};
+            ParallelSudokuSolver.runInOrder(puzzles, 3, false, Engine.TRAIL, ExecutorKind.PLATFORM,
+                    new ParallelSudokuSolver.ResultHandler() {
+                        public void handle(int index, SudokuBoard[] solutions) {
+                            assertEquals(next[0]++, index);
+                            assertSolutions(expected[index], solutions);
+                        }
+                    }, window);
+            assertEquals(puzzles.length, next[0]);
+        }
+    }
+
+    private static void assertSolutions(SudokuBoard[] expected, SudokuBoard[] actual) {
+        if (expected == null) {
+            assertNull(actual);
+        } else {
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; ++i)
+                assertEquals(expected[i].rawString(), actual[i].rawString());
+        }
+    }
+
+    @Test
+    public void Workspace_reuseMatchesFreshSolvers() throws SudokuBoard.SudokuException {
+        String[] puzzles = {hardPuzzles[0], inputA, invalidRowString, multipleA, solvedBoardString, hardPuzzles[1], inputB};
+        Workspace workspace = Workspace.get();
+        for (Engine engine: Engine.values()) {
+            for (boolean findAll: new boolean[]{false, true}) {
+                for (String puzzle: puzzles) {
+                    SudokuBoard[] expected = engine.solve(puzzle, findAll);
+                    assertSolutions(expected, workspace.solve(engine, puzzle, findAll));
+                    assertSolutions(expected, workspace.solve(engine, new SudokuBoard(puzzle), findAll));
+                }
+            }
+            try {
+                workspace.solve(engine, "too short", false);
+                fail("loaded a short puzzle");
+            } catch (SudokuBoard.SudokuException e) {
+                // expected, and the workspace can still be used afterwards
+                assertSolutions(engine.solve(inputA, false), workspace.solve(engine, inputA, false));
+            }
+        }
+    }
+
+    @Test
+    public void Workspace_countsAllocations() throws SudokuBoard.SudokuException {
+        Workspace.COUNT_ALLOCATIONS = true;
+        try {
+            Workspace.resetAllocationCount();
+            assertEquals(-1, Workspace.bytesPerPuzzle());
+            for (int i = 0; i < 10; ++i)
+                Workspace.get().solve(Engine.TRAIL, hardPuzzles[i], false);
+            assertTrue(Workspace.bytesPerPuzzle() >= 0);
+        } finally {
+            Workspace.COUNT_ALLOCATIONS = false;
+            Workspace.resetAllocationCount();
+        }
+    }
+
+    @Test
+    public void PuzzleFile_matchesReader() throws IOException {
+        StringBuilder text = new StringBuilder();
+        String[] lines = {inputA, "  " + inputB + " \r", "", "\r", hardPuzzles[2] + "\t", "too short", inputC};
+        for (int i = 0; i < 3000; ++i)
+            text.append(lines[i % lines.length]).append('\n');
+        text.append(inputD);  // no newline at the end
+        Path path = Files.createTempFile("puzzles", ".txt");
+        try {
+            Files.write(path, text.toString().getBytes("US-ASCII"));
+            // Read the text the way a slow pipe hands it over: a few bytes at a time, never
+            // more available than the next read returns
+            String[] expected = Perf.getPuzzles(new FilterInputStream(
+                    new ByteArrayInputStream(text.toString().getBytes("US-ASCII"))) {
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return super.read(b, off, Math.min(len, 7));
+                }
+
+                @Override
+                public int available() {
+                    return 0;
+                }
+            });
+            for (int nThreads: new int[]{1, 4}) {
+                PuzzleFile file = PuzzleFile.open(path, nThreads);
+                assertEquals(expected.length, file.size());
+                for (int i = 0; i < expected.length; ++i)
+                    assertEquals(expected[i], file.get(i).toString());
+            }
+
+            PuzzleFile file = PuzzleFile.open(path);
+            List<String> first = Arrays.asList(expected).subList(0, 50);
+            SudokuBoard[][] fromStrings = SudokuSolver.run(first, false, Engine.FLAT);
+            SudokuBoard[][] fromFile = ParallelSudokuSolver.run(file.subList(0, 50), 2, false, Engine.FLAT,
+                    ExecutorKind.PLATFORM);
+            for (int i = 0; i < fromStrings.length; ++i)
+                assertSolutions(fromStrings[i], fromFile[i]);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void PuzzleArchive_roundTrip() throws IOException, SudokuBoard.SudokuException {
+        String[] puzzles = {inputA, inputB, "too short", hardPuzzles[2], inputC};
+        Path text = Files.createTempFile("puzzles", ".txt");
+        Path packed = Files.createTempFile("puzzles", ".sdka");
+        Path results = Files.createTempFile("results", ".sdka");
+        try {
+            Files.write(text, Arrays.asList(puzzles));
+            assertFalse(PuzzleArchive.isArchive(text));
+            try (PuzzleArchive.Writer writer = new PuzzleArchive.Writer(packed, PuzzleArchive.KIND_PUZZLES, false)) {
+                for (String puzzle: puzzles) {
+                    try {
+                        writer.addPuzzle(puzzle);
+                    } catch (SudokuBoard.SudokuException e) {
+                        // skipped, as the converter does
+                    }
+                }
+            }
+            assertEquals(32 + 4 * 41, Files.size(packed));
+            assertTrue(PuzzleArchive.isArchive(packed));
+            List<CharSequence> archive = PuzzleArchive.openPuzzles(packed);
+            assertEquals(4, archive.size());
+            assertEquals(new SudokuBoard(hardPuzzles[2]).rawString(), new SudokuBoard(archive.get(2).toString()).rawString());
+            assertEquals(new SudokuBoard(inputC).rawString(), new SudokuBoard(archive.get(3).toString()).rawString());
+
+            // results: one solved, one with many solutions, one unsolvable, one over budget, one unreadable
+            SudokuBoard[][] outputs = {
+                    Engine.FLAT.solve(inputA, false),
+                    Engine.FLAT.solve(emptyBoardString, true),
+                    null,
+                    Budget.EXCEEDED,
+                    null
+            };
+            List<String> inputs = Arrays.asList(inputA, emptyBoardString, inputB, hardPuzzles[2], "too short");
+            for (boolean withIndex: new boolean[]{false, true}) {
+                try (PuzzleArchive.Writer writer = new PuzzleArchive.Writer(results, PuzzleArchive.KIND_RESULTS, withIndex)) {
+                    for (int i = 0; i < outputs.length; ++i)
+                        writer.addResult(inputs.get(i), outputs[i]);
+                }
+                PuzzleArchive read = PuzzleArchive.open(results);
+                assertEquals(5, read.size());
+                assertSolutions(outputs[0], read.getSolutions(0));
+                assertSolutions(outputs[1], read.getSolutions(1));
+                assertEquals(SudokuSolver.MAX_SOLNS, read.getSolutions(1).length);
+                assertNull(read.getSolutions(2));
+                assertSame(Budget.EXCEEDED, read.getSolutions(3));
+                assertEquals(PuzzleArchive.STATUS_INVALID, read.getStatus(4));
+                assertEquals(new SudokuBoard(inputB).rawString(), new SudokuBoard(read.get(2).toString()).rawString());
+            }
+        } finally {
+            Files.delete(text);
+            Files.delete(packed);
+            Files.delete(results);
+        }
+    }
+
+    @Test
+    public void PuzzleArchive_rejectsCorruptFiles() throws IOException, SudokuBoard.SudokuException {
+        Path results = Files.createTempFile("results", ".sdka");
+        try {
+            for (boolean withIndex: new boolean[]{false, true}) {
+                try (PuzzleArchive.Writer writer = new PuzzleArchive.Writer(results, PuzzleArchive.KIND_RESULTS, withIndex)) {
+                    writer.addResult(inputA, Engine.FLAT.solve(inputA, false));
+                }
+                byte[] good = Files.readAllBytes(results);
+                // the index offset in the header, the record's offset in the index, and its solution count
+                int[] fields = withIndex ? new int[]{16, good.length - 8, 32 + 41 + 1} : new int[]{32 + 41 + 1};
+                for (int field: fields) {
+                    for (long bad: new long[]{-1, Long.MAX_VALUE, good.length}) {
+                        byte[] corrupt = good.clone();
+                        int width = field == 32 + 41 + 1 ? 4 : 8;
+                        for (int b = 0; b < width; ++b)
+                            corrupt[field + b] = (byte) (bad >>> (8 * (width - 1 - b)));
+                        Files.write(results, corrupt);
+                        try {
+                            PuzzleArchive.open(results);
+                            fail("opened an archive with " + bad + " at " + field);
+                        } catch (IOException e) {
+                            // expected
+                        }
+                    }
+                }
+            }
+        } finally {
+            Files.delete(results);
+        }
+    }
+
+    @Test
+    public void ResultWriter_lines() throws IOException, SudokuBoard.SudokuException {
+        SudokuBoard[] solved = Engine.TRAIL.solve(inputA, false);
+        SudokuBoard[] many = Engine.TRAIL.solve(emptyBoardString, true);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // a tiny buffer is flushed in the middle of lines
+        ResultWriter writer = new ResultWriter(bytes, 1);
+        writer.write(inputA, solved);
+        writer.write(new SudokuBoard(emptyBoardString), many);
+        writer.write(inputB, null);
+        writer.write(hardPuzzles[0], Budget.EXCEEDED);
+        writer.write("too short", null);
+        writer.flush();
+
+        String[] lines = bytes.toString("US-ASCII").split("\n", -1);
+        assertEquals(6, lines.length);
+        assertEquals("", lines[5]);
+        assertEquals(inputA + "\tsolved\t1\t" + solved[0].rawString().replace('0', '.'), lines[0]);
+        String[] fields = lines[1].split("\t");
+        assertEquals(3 + many.length, fields.length);
+        assertEquals(emptyBoardString.replaceAll("[^1-9]", "."), fields[0]);
+        assertEquals("solved", fields[1]);
+        assertEquals(Integer.toString(SudokuSolver.MAX_SOLNS), fields[2]);
+        for (int k = 0; k < many.length; ++k)
+            assertTrue(new SudokuBoard(fields[3 + k]).isSolution());
+        assertEquals(inputB + "\tunsolvable\t0", lines[2]);
+        assertEquals(hardPuzzles[0] + "\tover-budget\t0", lines[3]);
+        assertEquals("too short\tinvalid\t0", lines[4]);
+
+        // streaming writes the same lines, with each input as it was parsed
+        String input = inputA + "\n\ntoo short\n" + multipleA + "\n" + hardPuzzles[1] + "\n";
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        writer = new ResultWriter(expected);
+        for (String line: input.split("\n")) {
+            if (line.isEmpty())
+                continue;
+            if (line.length() < 81)
+                writer.writeInvalid(line);
+            else
+                writer.write(new SudokuBoard(line), Engine.TRAIL.solve(line, true));
+        }
+        writer.flush();
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        ParallelSudokuSolver.runStreaming(new ByteArrayInputStream(input.getBytes()), new ResultWriter(actual),
+                2, true, Engine.TRAIL, 2, ExecutorKind.PLATFORM);
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void SudokuBoard_equalsAndHashCode() throws SudokuBoard.SudokuException {
+        SudokuBoard a = new SudokuBoard(inputA);
+        SudokuBoard b = new SudokuBoard(inputA);
+        DancingLinksSolver c = new DancingLinksSolver(inputA);
+        assertTrue(a.equals(b));
+        assertTrue(a.equals(c));
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(a.hashCode(), c.hashCode());
+        assertFalse(a.equals(new SudokuBoard(inputB)));
+        assertFalse(a.equals(inputA));
+        assertTrue(a.equals(new SudokuBoard(c)));
+    }
+
+    /* The puzzle with rows and columns reordered by `rows` and `columns`, numbers relabeled, maybe transposed */
+    private static String transform(String puzzle, int[] rows, int[] columns, int[] labels, boolean transpose) {
+        char[] out = new char[81];
+        for (int i = 0; i < 9; ++i) {
+            for (int j = 0; j < 9; ++j) {
+                int r = rows[i], c = columns[j];
+                char ch = transpose ? puzzle.charAt(9 * c + r) : puzzle.charAt(9 * r + c);
+                out[9 * i + j] = '1' <= ch && ch <= '9' ? (char) ('0' + labels[ch - '0']) : '.';
+            }
+        }
+        return new String(out);
+    }
+
+    private static final int[] IDENTITY = {0, 1, 2, 3, 4, 5, 6, 7, 8};
+    private static final int[] SHUFFLED = {5, 3, 4, 8, 6, 7, 1, 0, 2};
+    private static final int[] LABELS = {0, 4, 9, 1, 7, 3, 8, 2, 6, 5};
+    private static final int[] NO_LABELS = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+    @Test
+    public void CanonicalForm_sameForEveryTransform() {
+        for (String puzzle: new String[]{inputA, hardPuzzles[0], hardPuzzles[3], multipleA}) {
+            CanonicalForm form = CanonicalForm.of(puzzle);
+            assertNotNull(form);
+            String[] transforms = {
+                    transform(puzzle, IDENTITY, IDENTITY, NO_LABELS, true),
+                    transform(puzzle, SHUFFLED, IDENTITY, NO_LABELS, false),
+                    transform(puzzle, IDENTITY, SHUFFLED, NO_LABELS, false),
+                    transform(puzzle, IDENTITY, IDENTITY, LABELS, false),
+                    transform(puzzle, SHUFFLED, SHUFFLED, LABELS, true)
+            };
+            for (String t: transforms) {
+                CanonicalForm other = CanonicalForm.of(t);
+                assertEquals(form, other);
+                assertEquals(form.toString(), other.toString());
+                assertEquals(form.fingerprint(), other.fingerprint());
+            }
+        }
+        assertFalse(CanonicalForm.of(hardPuzzles[0]).equals(CanonicalForm.of(hardPuzzles[1])));
+        // too many ties to be worth finding
+        assertNull(CanonicalForm.of(emptyBoardString));
+    }
+
+    /* True if every number of the puzzle is in the same space of the board */
+    private static boolean fits(String puzzle, SudokuBoard board) {
+        String raw = board.rawString();
+        for (int c = 0; c < 81; ++c) {
+            char ch = puzzle.charAt(c);
+            if ('1' <= ch && ch <= '9' && raw.charAt(c) != ch)
+                return false;
+        }
+        return true;
+    }
+
+    @Test
+    public void SolutionCache_answersTransforms() throws SudokuBoard.SudokuException {
+        SolutionCache cache = new SolutionCache(2);
+        Workspace.CACHE = cache;
+        try {
+            Workspace workspace = Workspace.get();
+            String puzzle = hardPuzzles[0];
+            String moved = transform(puzzle, SHUFFLED, SHUFFLED, LABELS, true);
+            workspace.solve(Engine.TRAIL, puzzle, false);
+            assertEquals(0, cache.getHits());
+            SudokuBoard[] solns = workspace.solve(Engine.TRAIL, moved, false);
+            assertEquals(1, cache.getHits());
+            assertEquals(1, solns.length);
+            assertTrue(solns[0].isSolution());
+            assertTrue(fits(moved, solns[0]));
+            assertTrue(solns[0].equals(Engine.TRAIL.solve(moved, false)[0]));
+
+            // all solutions aren't answered from the first one, but are afterwards
+            String many = transform(multipleA, SHUFFLED, IDENTITY, LABELS, false);
+            workspace.solve(Engine.FLAT, multipleA, false);
+            assertEquals(1, workspace.solve(Engine.FLAT, many, false).length);
+            long hits = cache.getHits();
+            SudokuBoard[] all = workspace.solve(Engine.FLAT, many, true);
+            assertEquals(hits, cache.getHits());
+            SudokuBoard[] again = workspace.solve(Engine.FLAT, multipleA, true);
+            assertEquals(hits + 1, cache.getHits());
+            assertEquals(all.length, again.length);
+            for (SudokuBoard b: again) {
+                assertTrue(b.isSolution());
+                assertTrue(fits(multipleA, b));
+            }
+
+            // no solutions are cached too, and the least recently used puzzle is dropped
+            workspace.solve(Engine.DLX, invalidRowString, false);
+            assertNull(workspace.solve(Engine.DLX, transform(invalidRowString, IDENTITY, IDENTITY, LABELS, true), false));
+            assertEquals(hits + 2, cache.getHits());
+            assertEquals(2, cache.size());
+            workspace.solve(Engine.TRAIL, moved, false);
+            assertEquals(hits + 2, cache.getHits());
+        } finally {
+            Workspace.CACHE = null;
+        }
+    }
+
+    @Test
+    public void SolutionStore_persists() throws IOException, SudokuBoard.SudokuException {
+        Path dir = Files.createTempDirectory("store");
+        Path base = dir.resolve("solutions");
+        SudokuBoard[] solns = Engine.TRAIL.solve(multipleA, true);
+        byte[] key = SolutionStore.key(multipleA);
+        byte[] none = SolutionStore.key(invalidRowString);
+        assertNull(SolutionStore.key("123"));
+
+        SolutionStore store = SolutionStore.open(base);
+        assertSame(SolutionCache.MISS, store.get(key, false));
+        store.put(key, false, new SudokuBoard[]{solns[0]});
+        assertEquals(1, store.get(key, false).length);
+        assertSame(SolutionCache.MISS, store.get(key, true));
+        store.put(key, true, solns);
+        store.put(key, false, new SudokuBoard[]{solns[1]});
+        assertArrayEquals(solns, store.get(key, true));
+        store.put(none, false, null);
+        assertNull(store.get(none, true));
+        store.put(none, false, Budget.EXCEEDED);
+        assertEquals(2, store.size());
+
+        // enough puzzles that the index grows
+        char[] chars = new char[81];
+        Arrays.fill(chars, '.');
+        for (int i = 0; i < 40000; ++i) {
+            for (int j = 0, n = i; j < 5; ++j, n /= 9)
+                chars[j] = (char) ('1' + n % 9);
+            store.put(SolutionStore.key(new String(chars)), false, null);
+        }
+        assertEquals(40002, store.size());
+        store.close();
+
+        // it is all still there when opened again, and when the index is rebuilt from the log
+        for (int k = 0; k < 2; ++k) {
+            store = SolutionStore.open(base);
+            try {
+                assertEquals(40002, store.size());
+                assertArrayEquals(solns, store.get(key, true));
+                assertNull(store.get(none, false));
+                chars[0] = '1';
+                assertNull(store.get(SolutionStore.key(new String(chars)), true));
+                assertEquals(3, store.getHits());
+                try {
+                    SolutionStore.open(base);
+                    fail("opened a store that was already open");
+                } catch (IOException e) {
+                    // expected: the log is locked
+                }
+            } finally {
+                store.close();
+            }
+            Files.delete(dir.resolve("solutions.idx"));
+        }
+
+        // the workspace answers from it
+        Workspace.STORE = store = SolutionStore.open(base);
+        try {
+            assertArrayEquals(solns, Workspace.get().solve(Engine.DLX, multipleA, true));
+            assertEquals(1, store.getHits());
+            SudokuBoard[] solved = Workspace.get().solve(Engine.DLX, hardPuzzles[0], false);
+            assertEquals(1, store.getMisses());
+            assertArrayEquals(solved, Workspace.get().solve(Engine.FLAT, new SudokuBoard(hardPuzzles[0]), false));
+            assertEquals(2, store.getHits());
+        } finally {
+            Workspace.STORE = null;
+            store.close();
+        }
+    }
+
+    @Test
+    public void SolutionStore_rejectsCorruptLogs() throws IOException, SudokuBoard.SudokuException {
+        Path dir = Files.createTempDirectory("store");
+        Path base = dir.resolve("solutions");
+        Path data = dir.resolve("solutions.dat");
+        Path index = dir.resolve("solutions.idx");
+        try {
+            try (SolutionStore store = SolutionStore.open(base)) {
+                store.put(SolutionStore.key(multipleA), true, Engine.TRAIL.solve(multipleA, true));
+                store.put(SolutionStore.key(invalidRowString), false, null);
+            }
+            byte[] good = Files.readAllBytes(data);
+            // the first record's flags and solution count, with the second record after it
+            int flags = 16 + 41;
+            int count = 16 + 41 + 1;
+            int[][] corruptions = {{count, -2}, {count, 0x7FFFFFFF}, {count, SudokuSolver.MAX_SOLNS + 1},
+                    {flags, 0x85}, {flags, 0x03}};
+            for (int[] corruption: corruptions) {
+                byte[] corrupt = good.clone();
+                if (corruption[0] == count) {
+                    for (int b = 0; b < 4; ++b)
+                        corrupt[count + b] = (byte) (corruption[1] >>> (8 * (3 - b)));
+                } else {
+                    corrupt[flags] = (byte) corruption[1];
+                }
+                Files.write(data, corrupt);
+                Files.deleteIfExists(index);
+                try {
+                    SolutionStore.open(base).close();
+                    fail("opened a store with " + corruption[1] + " at " + corruption[0]);
+                } catch (IOException e) {
+                    // expected, and the log is left as it was
+                    assertArrayEquals(corrupt, Files.readAllBytes(data));
+                }
+            }
+
+            // a record cut off at the end of the log is only an interrupted write: it is dropped
+            byte[] torn = Arrays.copyOf(good, good.length + 41 + 1 + 4 + 10);
+            System.arraycopy(good, 16, torn, good.length, 41 + 1 + 4 + 10);
+            for (int length: new int[]{good.length + 20, torn.length}) {
+                Files.write(data, Arrays.copyOf(torn, length));
+                Files.deleteIfExists(index);
+                try (SolutionStore store = SolutionStore.open(base)) {
+                    assertEquals(2, store.size());
+                    assertNull(store.get(SolutionStore.key(invalidRowString), true));
+                }
+                assertArrayEquals(good, Files.readAllBytes(data));
+            }
+        } finally {
+            Files.deleteIfExists(data);
+            Files.deleteIfExists(index);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void LatencyHistogram_percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (long nanos = 1; nanos <= 1000000; ++nanos)
+            histogram.record(nanos);
+        histogram.record(5000000000L);
+        assertEquals(1000001, histogram.getCount());
+        assertEquals(5000000000L, histogram.getMax());
+        double[] percents = {50, 90, 99, 99.9};
+        for (double percent: percents) {
+            long exact = (long) Math.ceil(percent * 10000.01);
+            long p = histogram.getPercentile(percent);
+            assertTrue(p >= exact && p <= exact + exact / 16);
+        }
+        assertEquals(5000000000L, histogram.getPercentile(100));
+        for (long nanos = 0; nanos < 16; ++nanos) {
+            LatencyHistogram small = new LatencyHistogram();
+            small.record(nanos);
+            assertEquals(nanos, small.getPercentile(50));
+        }
+
+        // the workspace records every puzzle it solves, and histograms add up
+        Workspace.LATENCIES = histogram;
+        try {
+            histogram.reset();
+            SudokuSolver.run(hardPuzzles, false, Engine.TRAIL);
+            assertEquals(hardPuzzles.length, histogram.getCount());
+            LatencyHistogram both = new LatencyHistogram();
+            both.add(histogram);
+            both.add(histogram);
+            assertEquals(2 * hardPuzzles.length, both.getCount());
+            assertEquals(histogram.getMax(), both.getMax());
+            assertEquals(histogram.getPercentile(90), both.getPercentile(90));
+        } finally {
+            Workspace.LATENCIES = null;
+        }
+    }
+
+    @Test
+    public void SolverStats_countSearch() throws SudokuBoard.SudokuException {
+        // no guesses needed
+        SudokuSolver solver = new SudokuSolver(inputB);
+        assertTrue(solver.solve());
+        SolverStats stats = solver.getStats();
+        assertEquals(1, stats.getSearches());
+        assertEquals(1, stats.getNodes());
+        assertEquals(0, stats.getGuesses());
+        assertEquals(0, stats.getMaxDepth());
+        assertEquals(inputB.replaceAll("[^.]", "").length(), stats.getPlacedBySingles() + stats.getPlacedInRows()
+                + stats.getPlacedInCols() + stats.getPlacedInBoxes());
+
+        // every node after the first is a guess, and the counts start over for each search
+        solver = new SudokuSolver(hardPuzzles[0]);
+        solver.solveAll();
+        stats = solver.getStats();
+        long nodes = stats.getNodes();
+        assertTrue(nodes > 1);
+        assertEquals(nodes - 1, stats.getGuesses());
+        assertTrue(stats.getDeadEnds() > 0 && stats.getDeadEnds() < nodes);
+        assertTrue(stats.getMaxDepth() > 0 && stats.getMaxFrontier() > 0);
+        solver.solveAll();
+        assertEquals(nodes, solver.getStats().getNodes());
+        solver.setStats(null);
+        solver.solveAll();
+        assertEquals(nodes, stats.getNodes());
+
+        // per task, and added up over all the workspaces
+        SolverStats total = new SolverStats();
+        Workspace.STATS = total;
+        try {
+            ParallelSudokuSolver.SudokuTask task = new ParallelSudokuSolver.SudokuTask(multipleA, true);
+            assertNull(task.getStats());
+            task.call();
+            assertEquals(1, task.getStats().getSearches());
+            assertTrue(task.getStats().getDeadEnds() > 0);
+            ParallelSudokuSolver.SudokuTask dlx = new ParallelSudokuSolver.SudokuTask(multipleA, true, Engine.DLX);
+            dlx.call();
+            assertNull(dlx.getStats());
+            assertEquals(1, total.getSearches());
+            ParallelSudokuSolver.run(hardPuzzles, 2, false);
+            assertEquals(1 + hardPuzzles.length, total.getSearches());
+            assertTrue(total.getNodes() >= task.getStats().getNodes() + hardPuzzles.length);
+        } finally {
+            Workspace.STATS = null;
+        }
+    }
+
+    @Test
+    public void SolverEvents_recorded() throws IOException {
+        Path file = Files.createTempFile("events", ".jfr");
+        String[] puzzles = {inputB, hardPuzzles[0], "123"};
+        try (Recording recording = new Recording()) {
+            recording.enable("sudoku.PuzzleParsed");
+            recording.enable("sudoku.Solve");
+            recording.enable("sudoku.Guess");
+            recording.enable("sudoku.TaskQueued");
+            recording.enable("sudoku.TaskFinished");
+            recording.start();
+            SudokuSolver.run(puzzles, false, Engine.STANDARD);
+            ParallelSudokuSolver.runAsCompleted(puzzles, 2, false, Engine.STANDARD, ExecutorKind.PLATFORM,
+                    new ParallelSudokuSolver.ResultHandler() {
+                        public void handle(int index, SudokuBoard[] solutions) {
+                        }
+                    });
+            // in chunks, by batch tasks
+            ParallelSudokuSolver.run(puzzles, 2, false, Engine.STANDARD);
+            recording.stop();
+            recording.dump(file);
+        }
+        int parsed = 0, guesses = 0, queued = 0, finished = 0;
+        String[] outcomes = new String[puzzles.length];
+        for (RecordedEvent event: RecordingFile.readAllEvents(file)) {
+            String name = event.getEventType().getName();
+            if (name.equals("sudoku.PuzzleParsed")) {
+                parsed++;
+            } else if (name.equals("sudoku.Guess")) {
+                guesses++;
+                assertEquals(1, event.getLong("index"));
+            } else if (name.equals("sudoku.TaskQueued")) {
+                queued++;
+            } else if (name.equals("sudoku.TaskFinished")) {
+                finished++;
+            } else if (name.equals("sudoku.Solve")) {
+                int index = (int) event.getLong("index");
+                assertTrue(outcomes[index] == null || outcomes[index].equals(event.getString("outcome")));
+                outcomes[index] = event.getString("outcome");
+                if (index == 1)
+                    assertTrue(event.getLong("nodes") > 1);
+            }
+        }
+        Files.delete(file);
+        assertEquals(6, parsed);
+        assertTrue(guesses > 0);
+        assertEquals(6, queued);
+        assertEquals(3, finished);
+        assertArrayEquals(new String[]{"solved", "solved", "invalid"}, outcomes);
+    }
 }